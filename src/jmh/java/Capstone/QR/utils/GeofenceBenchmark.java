@@ -0,0 +1,62 @@
+package Capstone.QR.utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scan-path geofence check with the haversine it replaced, for a lecture-sized mix
+ * of nearby and far-away scans.
+ *
+ * <pre>./gradlew jmh</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeofenceBenchmark {
+
+    private static final double CENTER_LAT = 33.8938;
+    private static final double CENTER_LNG = 35.5018;
+    private static final int POINTS = 1024;
+
+    @Param({"5", "25", "100"})
+    public double radiusMeters;
+
+    @Param({"0.1", "0.5", "0.9"})
+    public double nearRatio;
+
+    private Geofence geofence;
+    private double[] lats;
+    private double[] lngs;
+
+    @Setup
+    public void setUp() {
+        geofence = Geofence.around(CENTER_LAT, CENTER_LNG, radiusMeters);
+        Random random = new Random(7);
+        lats = new double[POINTS];
+        lngs = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            double spread = random.nextDouble() < nearRatio ? radiusMeters * 1.5 / 111_000 : 0.05;
+            lats[i] = CENTER_LAT + (random.nextDouble() * 2 - 1) * spread;
+            lngs[i] = CENTER_LNG + (random.nextDouble() * 2 - 1) * spread;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void haversine(Blackhole blackhole) {
+        for (int i = 0; i < POINTS; i++) {
+            blackhole.consume(DistanceCalc.calculateDistance(CENTER_LAT, CENTER_LNG, lats[i], lngs[i]) <= radiusMeters);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void geofence(Blackhole blackhole) {
+        for (int i = 0; i < POINTS; i++) {
+            blackhole.consume(geofence.contains(lats[i], lngs[i]));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package Capstone.QR.loadtest;
+
+import Capstone.QR.model.*;
+import Capstone.QR.repository.*;
+import Capstone.QR.service.AttendanceCounterService;
+import Capstone.QR.service.TeacherService;
+import Capstone.QR.support.StatementCounter;
+import Capstone.QR.utils.GenerateSessions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Class attendance summary benchmark: seeds classes of increasing size with a semester of
+ * attendance rows and compares, per class size, the SQL round trips and latency of the old
+ * per-student recount, the GROUP BY (student, status) aggregate, the counter table read and the
+ * full {@link TeacherService#getClassAttendanceSummary} call.
+ *
+ * <pre>
+ * ./gradlew loadTest --tests '*ClassSummaryBenchmark' -Dloadtest.classSizes=50,200,800 -Dloadtest.sessions=30
+ * </pre>
+ */
+@SpringBootTest
+@ActiveProfiles("loadtest")
+@Import(ClassSummaryBenchmark.Config.class)
+class ClassSummaryBenchmark {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        static StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+    }
+
+    @Autowired
+    private TeacherService teacherService;
+    @Autowired
+    private AttendanceCounterService attendanceCounterService;
+    @Autowired
+    private TeacherRepository teacherRepository;
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private KlassRepository klassRepository;
+    @Autowired
+    private KlassStudentRepository klassStudentRepository;
+    @Autowired
+    private ClassSessionRepository classSessionRepository;
+    @Autowired
+    private AttendanceRepository attendanceRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void classSummary() {
+        int[] classSizes = Arrays.stream(System.getProperty("loadtest.classSizes", "50,200,800").split(","))
+                .mapToInt(size -> Integer.parseInt(size.trim()))
+                .toArray();
+        int sessions = Integer.getInteger("loadtest.sessions", 30);
+        int iterations = Integer.getInteger("loadtest.iterations", 20);
+        Random random = new Random(Long.getLong("loadtest.seed", 42L));
+
+        Teacher teacher = new Teacher();
+        teacher.setName("Summary Teacher");
+        teacher.setEmail("summary-teacher@loadtest.local");
+        teacher.setPassword("n/a");
+        teacher.setRole(Role.TEACHER);
+        teacher.setApproved(true);
+        teacherRepository.save(teacher);
+
+        System.out.println();
+        System.out.println("=== Class summary: " + sessions + " sessions per class, " + iterations + " iterations ===");
+        System.out.printf("%-10s %-22s %12s %12s%n", "students", "approach", "statements", "mean ms");
+
+        for (int classSize : classSizes) {
+            Long classId = seedClass(teacher, classSize, sessions, random);
+            attendanceCounterService.rebuildAll();
+
+            report(classSize, "per-student recount", iterations, () -> transactionTemplate.execute(status -> {
+                Map<Long, int[]> counts = new HashMap<>();
+                for (Student student : klassStudentRepository.findApprovedStudentsByClassId(classId)) {
+                    int[] tally = new int[AttendanceStatus.values().length];
+                    attendanceRepository.findBySession_Klass_IdAndStudent_Id(classId, student.getId())
+                            .forEach(a -> tally[a.getStatus().ordinal()]++);
+                    counts.put(student.getId(), tally);
+                }
+                return counts;
+            }));
+            report(classSize, "group by aggregate", iterations,
+                    () -> attendanceRepository.countByStudentAndStatusForClass(classId));
+            report(classSize, "counter table", iterations,
+                    () -> attendanceCounterService.getCountersForClass(classId));
+            report(classSize, "summary endpoint", iterations,
+                    () -> teacherService.getClassAttendanceSummary(classId));
+        }
+    }
+
+    private Long seedClass(Teacher teacher, int classSize, int sessions, Random random) {
+        LocalDate today = LocalDate.now();
+        Klass klass = new Klass();
+        klass.setName("Summary " + classSize);
+        klass.setDescription("Summary benchmark class");
+        klass.setTeacher(teacher);
+        klass.setMaxAbsencesAllowed(3);
+        klass.setDurationMinutes(60);
+        klass.setStartDate(today.minusDays(sessions));
+        klass.setEndDate(today.minusDays(1));
+        klass.setScheduledDays(List.of(DayOfWeek.values()));
+        klass.setClassTime(LocalTime.of(9, 0));
+        klass.setJoinCode("SUM" + classSize + "-" + random.nextInt(1_000_000));
+        klass.setAcceptanceRadiusMeters(10.0);
+        klass.setAllowedWifiSSIDs(List.of("campus-wifi"));
+        klassRepository.save(klass);
+        List<ClassSession> classSessions = classSessionRepository.saveAll(GenerateSessions.generateSessionsForClass(klass));
+
+        List<Student> students = new ArrayList<>(classSize);
+        for (int i = 0; i < classSize; i++) {
+            Student student = new Student();
+            student.setName("Student " + classSize + "-" + i);
+            student.setEmail("summary" + classSize + "-" + i + "@loadtest.local");
+            student.setPassword("n/a");
+            student.setRole(Role.STUDENT);
+            students.add(student);
+        }
+        studentRepository.saveAll(students);
+
+        List<KlassStudent> enrollments = new ArrayList<>(classSize);
+        for (Student student : students) {
+            KlassStudent enrollment = new KlassStudent();
+            enrollment.setKlass(klass);
+            enrollment.setStudent(student);
+            enrollment.setApproved(true);
+            enrollments.add(enrollment);
+        }
+        klassStudentRepository.saveAll(enrollments);
+
+        List<Object[]> rows = new ArrayList<>(classSize * classSessions.size());
+        Timestamp recordedAt = Timestamp.valueOf(LocalDateTime.now());
+        for (ClassSession session : classSessions) {
+            for (Student student : students) {
+                double roll = random.nextDouble();
+                String status = roll < 0.8 ? "PRESENT" : roll < 0.95 ? "ABSENT" : "EXCUSED";
+                rows.add(new Object[]{session.getId(), student.getId(), status, recordedAt});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO attendance (session_id, student_id, status, recorded_at) VALUES (?, ?, ?, ?)", rows);
+        return klass.getId();
+    }
+
+    private static void report(int classSize, String approach, int iterations, Supplier<?> call) {
+        call.get();
+        StatementCounter.reset();
+        long started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            call.get();
+        }
+        long nanos = System.nanoTime() - started;
+        System.out.printf("%-10d %-22s %12.1f %12.2f%n", classSize, approach,
+                StatementCounter.statements() / (double) iterations, nanos / 1e6 / iterations);
+    }
+}
@@ -0,0 +1,243 @@
+package Capstone.QR.loadtest;
+
+import Capstone.QR.dto.Request.CreateClassRequest;
+import Capstone.QR.dto.Response.ClassResponse;
+import Capstone.QR.model.*;
+import Capstone.QR.repository.ClassSessionRepository;
+import Capstone.QR.repository.KlassRepository;
+import Capstone.QR.repository.KlassStudentRepository;
+import Capstone.QR.repository.StudentRepository;
+import Capstone.QR.repository.TeacherRepository;
+import Capstone.QR.security.jwt.JwtUtil;
+import Capstone.QR.service.CustomUserDetailsService;
+import Capstone.QR.service.TeacherService;
+import Capstone.QR.support.StatementCounter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Scan storm harness: seeds a class with N approved students, generates a QR through
+ * {@link TeacherService#generateQrCodeForSession}, then fires concurrent {@code /api/student/scan}
+ * requests and reports latency percentiles, throughput, outcomes and SQL round trips.
+ *
+ * <pre>
+ * ./gradlew loadTest -Dloadtest.students=300 -Dloadtest.concurrency=64 \
+ *     -Dloadtest.wifiOnlyRatio=0.1 -Dloadtest.farRatio=0.05 -Dloadtest.duplicateRatio=0.1
+ * </pre>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+@Import(ScanStormLoadTest.Config.class)
+class ScanStormLoadTest {
+
+    private static final double QR_LAT = 33.8938;
+    private static final double QR_LNG = 35.5018;
+    private static final String CLASSROOM_SSID = "campus-wifi";
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        static StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TeacherService teacherService;
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+    @Autowired
+    private TeacherRepository teacherRepository;
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private KlassRepository klassRepository;
+    @Autowired
+    private KlassStudentRepository klassStudentRepository;
+    @Autowired
+    private ClassSessionRepository classSessionRepository;
+    @Autowired
+    private JwtUtil jwtUtil;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void scanStorm() throws Exception {
+        int students = Integer.getInteger("loadtest.students", 300);
+        int concurrency = Integer.getInteger("loadtest.concurrency", 64);
+        double wifiOnlyRatio = Double.parseDouble(System.getProperty("loadtest.wifiOnlyRatio", "0.1"));
+        double farRatio = Double.parseDouble(System.getProperty("loadtest.farRatio", "0.05"));
+        double duplicateRatio = Double.parseDouble(System.getProperty("loadtest.duplicateRatio", "0.1"));
+        long seed = Long.getLong("loadtest.seed", 42L);
+
+        Teacher teacher = new Teacher();
+        teacher.setName("Load Teacher");
+        teacher.setEmail("teacher@loadtest.local");
+        teacher.setPassword("n/a");
+        teacher.setRole(Role.TEACHER);
+        teacher.setApproved(true);
+        teacherRepository.save(teacher);
+        UserDetails teacherDetails = userDetailsService.loadUserByUsername(teacher.getEmail());
+
+        LocalDate today = LocalDate.now();
+        CreateClassRequest classRequest = new CreateClassRequest(
+                "Scan storm", "Load harness class", 3, today, today, List.of(today.getDayOfWeek()),
+                LocalTime.now().minusMinutes(5).withNano(0), 10.0, 120, List.of(CLASSROOM_SSID));
+        ClassResponse created = teacherService.createClass(classRequest, teacherDetails);
+
+        List<String> tokens = new ArrayList<>(students);
+        List<KlassStudent> enrollments = new ArrayList<>(students);
+        Klass klass = klassRepository.findById(created.getId()).orElseThrow();
+        for (int i = 0; i < students; i++) {
+            Student student = new Student();
+            student.setName("Student " + i);
+            student.setEmail("student" + i + "@loadtest.local");
+            student.setPassword("n/a");
+            student.setRole(Role.STUDENT);
+            studentRepository.save(student);
+
+            KlassStudent enrollment = new KlassStudent();
+            enrollment.setKlass(klass);
+            enrollment.setStudent(student);
+            enrollment.setApproved(true);
+            enrollments.add(enrollment);
+            tokens.add(jwtUtil.generateToken(student.getEmail(), Role.STUDENT.name()));
+        }
+        klassStudentRepository.saveAll(enrollments);
+
+        Long sessionId = classSessionRepository.findByKlass_Id(created.getId()).get(0).getId();
+        QRCode qrCode = transactionTemplate.execute(status ->
+                teacherService.generateQrCodeForSession(sessionId, QR_LAT, QR_LNG, teacherDetails));
+        String qrText = qrCode.getQrText();
+
+        Random random = new Random(seed);
+        List<String> bodies = new ArrayList<>();
+        List<String> senders = new ArrayList<>();
+        for (int i = 0; i < students; i++) {
+            double roll = random.nextDouble();
+            double lat = QR_LAT;
+            String ssid = CLASSROOM_SSID;
+            if (roll < farRatio) {
+                lat += 0.01;
+                ssid = "mobile-hotspot";
+            } else if (roll < farRatio + wifiOnlyRatio) {
+                lat += 0.001;
+            } else {
+                lat += random.nextGaussian() * 0.00002;
+            }
+            String body = scanBody(qrText, lat, QR_LNG, ssid);
+            bodies.add(body);
+            senders.add(tokens.get(i));
+            if (random.nextDouble() < duplicateRatio) {
+                bodies.add(body);
+                senders.add(tokens.get(i));
+            }
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(concurrency))
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        CountDownLatch gate = new CountDownLatch(1);
+        long[] latencies = new long[bodies.size()];
+        Map<String, Integer> outcomes = new ConcurrentSkipListMap<>();
+        List<Future<?>> futures = new ArrayList<>();
+
+        StatementCounter.reset();
+        for (int i = 0; i < bodies.size(); i++) {
+            int index = i;
+            futures.add(pool.submit(() -> {
+                gate.await();
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/student/scan"))
+                        .header("Content-Type", "application/json")
+                        .header("Authorization", "Bearer " + senders.get(index))
+                        .POST(HttpRequest.BodyPublishers.ofString(bodies.get(index)))
+                        .build();
+                long started = System.nanoTime();
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                latencies[index] = System.nanoTime() - started;
+                outcomes.merge(classify(response), 1, Integer::sum);
+                return null;
+            }));
+        }
+
+        long stormStarted = System.nanoTime();
+        gate.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        long stormNanos = System.nanoTime() - stormStarted;
+        pool.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.println();
+        System.out.println("=== Scan storm: " + students + " students, " + bodies.size() + " requests, concurrency " + concurrency + " ===");
+        System.out.printf("throughput        %.1f req/s over %.0f ms%n", bodies.size() / (stormNanos / 1e9), stormNanos / 1e6);
+        System.out.printf("latency p50/p95/p99  %.1f / %.1f / %.1f ms (max %.1f)%n",
+                percentile(latencies, 50), percentile(latencies, 95), percentile(latencies, 99),
+                latencies[latencies.length - 1] / 1e6);
+        System.out.printf("sql round trips   %d (%.2f per scan), %d rows sent in batches%n",
+                StatementCounter.statements(), StatementCounter.statements() / (double) bodies.size(),
+                StatementCounter.batchedRows());
+        System.out.println("outcomes");
+        outcomes.forEach((outcome, count) -> System.out.printf("  %-28s %d%n", outcome, count));
+    }
+
+    private String scanBody(String qrText, double lat, double lng, String ssid) throws Exception {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("qrCodeData", qrText);
+        body.put("latitude", lat);
+        body.put("longitude", lng);
+        body.put("networkName", ssid);
+        return objectMapper.writeValueAsString(body);
+    }
+
+    private String classify(HttpResponse<String> response) {
+        try {
+            JsonNode json = objectMapper.readTree(response.body());
+            String message = json.has("message") ? json.get("message").asText() : json.path("error").asText();
+            if (message.startsWith("Attendance marked")) return "MARKED";
+            if (message.startsWith("You're not near")) return "REQUEST_SENT";
+            if (message.startsWith("There is already pending")) return "REQUEST_ALREADY_PENDING";
+            if (message.startsWith("Attendance already marked")) return "ALREADY_MARKED";
+            if (message.startsWith("You're too far")) return "TOO_FAR";
+            if (message.startsWith("QR code has expired")) return "EXPIRED";
+            if (message.startsWith("Invalid QR code")) return "INVALID_QR";
+            if (message.startsWith("Student not registered")) return "NOT_ENROLLED";
+            return "HTTP_" + response.statusCode() + " " + message;
+        } catch (Exception e) {
+            return "HTTP_" + response.statusCode();
+        }
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
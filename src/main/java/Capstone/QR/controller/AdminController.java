@@ -5,10 +5,15 @@ import Capstone.QR.dto.Response.ApiResponse;
 import Capstone.QR.dto.Response.PendingTeacherResponse;
 import Capstone.QR.dto.Response.StudentInClassResponse;
 import Capstone.QR.service.AdminService;
+import Capstone.QR.service.AttendanceExportService;
+import Capstone.QR.service.BulkExportService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -19,6 +24,8 @@ import java.util.List;
 public class AdminController {
 
     private final AdminService adminService;
+    private final AttendanceExportService attendanceExportService;
+    private final BulkExportService bulkExportService;
 
     @PostMapping("/approve-teacher/{teacherId}")
     public ResponseEntity<ApiResponse<String>> approveTeacher(@PathVariable Long teacherId) {
@@ -56,6 +63,23 @@ public class AdminController {
         return ResponseEntity.ok(new ApiResponse<>("All classes fetched", data));
     }
 
+    @GetMapping("/export-attendance")
+    public ResponseEntity<StreamingResponseBody> exportAllAttendance(@RequestParam(defaultValue = "NDJSON") AttendanceExportService.TextFormat format) {
+        StreamingResponseBody body = attendanceExportService.institutionText(format);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=attendance_all." + format.extension())
+                .contentType(MediaType.parseMediaType(format.contentType() + ";charset=UTF-8"))
+                .body(body);
+    }
+
+    @GetMapping("/export-attendance-zip")
+    public ResponseEntity<StreamingResponseBody> exportAllAttendanceZip(@RequestParam(defaultValue = "FLAT") AttendanceExportService.Layout layout) {
+        StreamingResponseBody body = bulkExportService.institutionArchive(layout);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=attendance_all.zip")
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
+    }
 
     @DeleteMapping("/remove-student/{classId}/{studentId}")
     public ResponseEntity<ApiResponse<String>> removeStudentFromClass(@PathVariable Long classId,
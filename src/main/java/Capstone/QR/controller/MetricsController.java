@@ -0,0 +1,52 @@
+package Capstone.QR.controller;
+
+import Capstone.QR.dto.Response.ApiResponse;
+import Capstone.QR.dto.Response.EnrollmentCacheStatsResponse;
+import Capstone.QR.dto.Response.FinalizationExecutorStatsResponse;
+import Capstone.QR.dto.Response.FinalizationStatusResponse;
+import Capstone.QR.dto.Response.ScanIngestionStatsResponse;
+import Capstone.QR.service.AttendanceFinalizationService;
+import Capstone.QR.service.AttendanceIngestionService;
+import Capstone.QR.service.AttendanceScheduler;
+import Capstone.QR.service.EnrollmentCache;
+import Capstone.QR.service.FinalizationExecutor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/metrics")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class MetricsController {
+
+    private final AttendanceIngestionService attendanceIngestionService;
+    private final EnrollmentCache enrollmentCache;
+    private final AttendanceFinalizationService attendanceFinalizationService;
+    private final AttendanceScheduler attendanceScheduler;
+    private final FinalizationExecutor finalizationExecutor;
+
+    @GetMapping("/scan-ingestion")
+    public ResponseEntity<ApiResponse<ScanIngestionStatsResponse>> getScanIngestionStats() {
+        return ResponseEntity.ok(new ApiResponse<>("Scan ingestion stats fetched", attendanceIngestionService.getStats()));
+    }
+
+    @GetMapping("/enrollment-cache")
+    public ResponseEntity<ApiResponse<EnrollmentCacheStatsResponse>> getEnrollmentCacheStats() {
+        return ResponseEntity.ok(new ApiResponse<>("Enrollment cache stats fetched", enrollmentCache.getStats()));
+    }
+
+    @GetMapping("/finalization")
+    public ResponseEntity<ApiResponse<FinalizationStatusResponse>> getFinalizationStatus() {
+        FinalizationStatusResponse status = attendanceFinalizationService.getStatus(attendanceScheduler.getScheduledCount());
+        return ResponseEntity.ok(new ApiResponse<>("Finalization status fetched", status));
+    }
+
+    @GetMapping("/finalization-executor")
+    public ResponseEntity<ApiResponse<FinalizationExecutorStatsResponse>> getFinalizationExecutorStats() {
+        return ResponseEntity.ok(new ApiResponse<>("Finalization executor stats fetched", finalizationExecutor.getStats()));
+    }
+}
@@ -2,6 +2,7 @@ package Capstone.QR.controller;
 
 import Capstone.QR.dto.Request.AttendanceUpdateRequest;
 import Capstone.QR.dto.Request.CreateClassRequest;
+import Capstone.QR.dto.Request.ExportJobRequest;
 import Capstone.QR.dto.Request.GenerateQrRequest;
 import Capstone.QR.dto.Request.UpdateSessionRequest;
 import Capstone.QR.dto.Response.*;
@@ -10,9 +11,15 @@ import Capstone.QR.model.AttendanceRequest;
 import Capstone.QR.model.Klass;
 import Capstone.QR.model.QRCode;
 import Capstone.QR.service.AttendanceExportService;
+import Capstone.QR.service.BulkExportService;
+import Capstone.QR.service.ExportJobService;
+import Capstone.QR.service.QrImageCache;
 import Capstone.QR.service.TeacherService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -21,8 +28,16 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -34,6 +49,8 @@ public class TeacherController {
 
     private final TeacherService teacherService;
     private final AttendanceExportService attendanceExportService;
+    private final ExportJobService exportJobService;
+    private final BulkExportService bulkExportService;
 
     @PostMapping("/create-class")
     public ResponseEntity<ApiResponse<ClassResponse>> createClass(@RequestBody @Valid CreateClassRequest request,
@@ -48,6 +65,19 @@ public class TeacherController {
         return ResponseEntity.ok(new ApiResponse<>("Classes fetched successfully", classes));
     }
 
+    @GetMapping("/sessions/live")
+    public ResponseEntity<ApiResponse<List<TeacherSessionResponse>>> getLiveSessions(@AuthenticationPrincipal UserDetails userDetails) {
+        List<TeacherSessionResponse> sessions = teacherService.getLiveSessions(userDetails);
+        return ResponseEntity.ok(new ApiResponse<>("Live sessions fetched successfully", sessions));
+    }
+
+    @GetMapping("/sessions/upcoming")
+    public ResponseEntity<ApiResponse<List<TeacherSessionResponse>>> getUpcomingSessions(@RequestParam(defaultValue = "60") int withinMinutes,
+                                                                                       @AuthenticationPrincipal UserDetails userDetails) {
+        List<TeacherSessionResponse> sessions = teacherService.getUpcomingSessions(Math.max(1, Math.min(withinMinutes, 7 * 24 * 60)), userDetails);
+        return ResponseEntity.ok(new ApiResponse<>("Upcoming sessions fetched successfully", sessions));
+    }
+
     @PutMapping("/teacher/session/update")
     public ResponseEntity<ApiResponse<String>> updateSession(
             @RequestBody @Valid UpdateSessionRequest request,
@@ -111,6 +141,34 @@ public class TeacherController {
         return ResponseEntity.ok(new ApiResponse<>("QR Code generated", mapToQRCodeResponse(qrCode)));
     }
 
+    @GetMapping("/session/{sessionId}/qr")
+    public ResponseEntity<ApiResponse<QRCodeResponse>> getCurrentQrCode(@PathVariable Long sessionId,
+                                                                        @AuthenticationPrincipal UserDetails userDetails) {
+        QRCode qrCode = teacherService.getCurrentQrCode(sessionId, userDetails);
+        return ResponseEntity.ok(new ApiResponse<>("QR Code fetched", mapToQRCodeResponse(qrCode)));
+    }
+
+    @GetMapping(value = "/session/{sessionId}/qr.png", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<byte[]> getQrCodePng(@PathVariable Long sessionId,
+                                               @RequestParam(defaultValue = "300") int size,
+                                               @AuthenticationPrincipal UserDetails userDetails) {
+        QrImageCache.RenderedQr image = teacherService.getCurrentQrImage(sessionId, QrImageCache.Format.PNG, size, userDetails);
+        return qrImageResponse(image, MediaType.IMAGE_PNG);
+    }
+
+    @GetMapping(value = "/session/{sessionId}/qr.svg", produces = "image/svg+xml")
+    public ResponseEntity<byte[]> getQrCodeSvg(@PathVariable Long sessionId,
+                                               @AuthenticationPrincipal UserDetails userDetails) {
+        QrImageCache.RenderedQr image = teacherService.getCurrentQrImage(sessionId, QrImageCache.Format.SVG, 0, userDetails);
+        return qrImageResponse(image, MediaType.parseMediaType("image/svg+xml"));
+    }
+
+    @GetMapping(value = "/session/{sessionId}/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSessionAttendance(@PathVariable Long sessionId,
+                                              @AuthenticationPrincipal UserDetails userDetails) {
+        return teacherService.subscribeToSessionLive(sessionId, userDetails);
+    }
+
     @GetMapping("/class/{classId}/student/{studentId}/stats")
     public ResponseEntity<ApiResponse<StudentClassAttendanceStatsResponse>> getStudentStatsForClass(@PathVariable Long classId,
                                                                                                     @PathVariable Long studentId,
@@ -137,6 +195,15 @@ public class TeacherController {
         return ResponseEntity.ok(new ApiResponse<>("Attendance updated", null));
     }
 
+    @PutMapping("/session/{sessionId}/student/{studentId}/attendance")
+    public ResponseEntity<ApiResponse<String>> editStudentAttendance(@PathVariable Long sessionId,
+                                                                     @PathVariable Long studentId,
+                                                                     @RequestBody AttendanceUpdateRequest request,
+                                                                     @AuthenticationPrincipal UserDetails userDetails) {
+        teacherService.editStudentAttendance(sessionId, studentId, request.getStatus(), userDetails);
+        return ResponseEntity.ok(new ApiResponse<>("Attendance updated", null));
+    }
+
 
     @PostMapping("/session/{sessionId}/approve-request/{requestId}")
     public ResponseEntity<ApiResponse<String>> approveRequest(@PathVariable Long sessionId,
@@ -165,18 +232,77 @@ public class TeacherController {
 
 
     @GetMapping("/export-attendance-excel/{classId}")
-    public ResponseEntity<byte[]> exportAttendanceExcel(@PathVariable Long classId) {
-        try {
-            ByteArrayInputStream stream = attendanceExportService.exportAttendanceSheet(classId);
-            HttpHeaders headers = new HttpHeaders();
-            headers.add("Content-Disposition", "attachment; filename=attendance_" + classId + ".xlsx");
-
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                    .body(stream.readAllBytes());
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+    public ResponseEntity<StreamingResponseBody> exportAttendanceExcel(@PathVariable Long classId,
+                                                                       @RequestParam(defaultValue = "FLAT") AttendanceExportService.Layout layout) {
+        StreamingResponseBody body = attendanceExportService.attendanceSheet(classId, layout);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=attendance_" + classId + ".xlsx")
+                .contentType(MediaType.parseMediaType(AttendanceExportService.XLSX_CONTENT_TYPE))
+                .body(body);
+    }
+
+    @GetMapping("/export-attendance/{classId}")
+    public ResponseEntity<StreamingResponseBody> exportAttendanceText(@PathVariable Long classId,
+                                                                      @RequestParam(defaultValue = "CSV") AttendanceExportService.TextFormat format) {
+        StreamingResponseBody body = attendanceExportService.attendanceText(classId, format);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=attendance_" + classId + "." + format.extension())
+                .contentType(MediaType.parseMediaType(format.contentType() + ";charset=UTF-8"))
+                .body(body);
+    }
+
+    @GetMapping("/export-attendance-zip")
+    public ResponseEntity<StreamingResponseBody> exportAttendanceZip(@RequestParam(defaultValue = "FLAT") AttendanceExportService.Layout layout,
+                                                                     @AuthenticationPrincipal UserDetails userDetails) {
+        StreamingResponseBody body = bulkExportService.teacherArchive(userDetails.getUsername(), layout);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=attendance.zip")
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
+    }
+
+    @PostMapping("/export-jobs")
+    public ResponseEntity<ApiResponse<ExportJobResponse>> startExportJob(@Valid @RequestBody ExportJobRequest request,
+                                                                         @AuthenticationPrincipal UserDetails userDetails) {
+        ExportJobResponse job = exportJobService.submit(request.getClassIds(), request.getLayout(), userDetails.getUsername());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(new ApiResponse<>("Export job started", job));
+    }
+
+    @GetMapping("/export-jobs/{jobId}")
+    public ResponseEntity<ApiResponse<ExportJobResponse>> getExportJob(@PathVariable String jobId,
+                                                                       @AuthenticationPrincipal UserDetails userDetails) {
+        ExportJobResponse job = exportJobService.getJob(jobId, userDetails.getUsername());
+        return ResponseEntity.ok(new ApiResponse<>("Export job fetched", job));
+    }
+
+    /**
+     * Hands the spooled file to Tomcat's sendfile when the connector supports it, so the bytes go
+     * from the page cache to the socket without passing through the JVM; otherwise copies it with
+     * {@link FileChannel#transferTo}.
+     */
+    @GetMapping("/export-jobs/{jobId}/download")
+    public void downloadExportJob(@PathVariable String jobId,
+                                  @AuthenticationPrincipal UserDetails userDetails,
+                                  HttpServletRequest request,
+                                  HttpServletResponse response) throws IOException {
+        Path file = exportJobService.getFile(jobId, userDetails.getUsername());
+        long length = Files.size(file);
+        response.setContentType(AttendanceExportService.XLSX_CONTENT_TYPE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=attendance_" + jobId + ".xlsx");
+        response.setContentLengthLong(length);
+
+        if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            request.setAttribute("org.apache.tomcat.sendfile.filename", file.toAbsolutePath().toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", 0L);
+            request.setAttribute("org.apache.tomcat.sendfile.end", length);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             WritableByteChannel out = Channels.newChannel(response.getOutputStream())) {
+            long position = 0;
+            while (position < length) {
+                position += channel.transferTo(position, length - position, out);
+            }
         }
     }
 
@@ -190,10 +316,20 @@ public class TeacherController {
         return dto;
     }
 
+    // Spring answers 304 itself when If-None-Match matches the ETag
+    private ResponseEntity<byte[]> qrImageResponse(QrImageCache.RenderedQr image, MediaType mediaType) {
+        return ResponseEntity.ok()
+                .eTag(image.etag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(mediaType)
+                .body(image.bytes());
+    }
+
     private QRCodeResponse mapToQRCodeResponse(QRCode qr) {
         QRCodeResponse dto = new QRCodeResponse();
         dto.setId(qr.getId());
         dto.setClassId(qr.getSession().getKlass().getId());
+        dto.setScanToken(qr.getQrText());
         dto.setQrCodeData(qr.getQrCodeData());
         dto.setSessionDate(qr.getSessionDate());
         dto.setExpiresAt(qr.getExpiresAt());
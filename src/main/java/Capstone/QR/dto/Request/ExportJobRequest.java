@@ -0,0 +1,15 @@
+package Capstone.QR.dto.Request;
+
+
+import Capstone.QR.service.AttendanceExportService;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ExportJobRequest {
+    @NotEmpty(message = "At least one class is required")
+    private List<Long> classIds;
+    private AttendanceExportService.Layout layout = AttendanceExportService.Layout.FLAT;
+}
@@ -2,11 +2,13 @@ package Capstone.QR.dto.Request;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
 @Data
 public class ScanQrRequest {
     @NotBlank
+    @Size(max = 64)
     private String qrCodeData;
 
     @NotNull
@@ -0,0 +1,23 @@
+package Capstone.QR.dto.Response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class EnrollmentCacheStatsResponse {
+    private int classesCached;
+    private long approvedStudents;
+    private long memoryBytes;
+    private List<ClassEntry> classes;
+
+    @Data
+    @AllArgsConstructor
+    public static class ClassEntry {
+        private Long classId;
+        private long approvedStudents;
+        private long memoryBytes;
+    }
+}
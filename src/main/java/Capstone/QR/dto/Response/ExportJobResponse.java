@@ -0,0 +1,21 @@
+package Capstone.QR.dto.Response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExportJobResponse {
+    private String jobId;
+    private String status;
+    private List<Long> classIds;
+    private String layout;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+    private String error;
+}
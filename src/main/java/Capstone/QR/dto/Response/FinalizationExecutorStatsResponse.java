@@ -0,0 +1,28 @@
+package Capstone.QR.dto.Response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class FinalizationExecutorStatsResponse {
+    private int parallelism;
+    private int activeWorkers;
+    private int queuedLanes;
+    private int queueCapacity;
+    private long rejectedLanes;
+    private List<LaneStats> lanes;
+
+    @Data
+    @AllArgsConstructor
+    public static class LaneStats {
+        private int lane;
+        private long sessionsFinalized;
+        private long failures;
+        private double averageSessionMillis;
+        private double maxSessionMillis;
+        private double lastRunMillis;
+    }
+}
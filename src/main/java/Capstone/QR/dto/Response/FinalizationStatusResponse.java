@@ -0,0 +1,16 @@
+package Capstone.QR.dto.Response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class FinalizationStatusResponse {
+    private LocalDateTime watermark;
+    private int backlogSize;
+    private LocalDateTime oldestBacklogEnd;
+    private int finalizingSessions;
+    private int scheduledSessions;
+}
@@ -8,6 +8,7 @@ import java.time.LocalDateTime;
 public class QRCodeResponse {
     private Long id;
     private Long classId;
+    private String scanToken;
     private String qrCodeData;
     private LocalDateTime sessionDate;
     private LocalDateTime expiresAt;
@@ -0,0 +1,18 @@
+package Capstone.QR.dto.Response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ScanIngestionStatsResponse {
+    private int queueDepth;
+    private int queueCapacity;
+    private long batchesCommitted;
+    private long scansCommitted;
+    private long lastBatchSize;
+    private long maxBatchSize;
+    private double lastCommitMillis;
+    private double averageCommitMillis;
+    private long synchronousWrites;
+}
@@ -0,0 +1,18 @@
+package Capstone.QR.dto.Response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class SessionLiveEvent {
+    private Long sessionId;
+    private long present;
+    private long pending;
+    private long absent;
+    private long excused;
+    private List<Long> newlyPresentStudentIds;
+    private List<Long> newRequestStudentIds;
+}
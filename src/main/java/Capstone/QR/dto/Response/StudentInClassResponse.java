@@ -11,6 +11,9 @@ public class StudentInClassResponse {
     private String name;
     private String email;
     private String imageURL;
+    private int presentCount;
+    private int absentCount;
+    private int excusedCount;
 
 
 }
@@ -0,0 +1,19 @@
+package Capstone.QR.dto.Response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TeacherSessionResponse {
+    private Long sessionId;
+    private Long classId;
+    private String className;
+    private String topic;
+    private LocalDateTime startsAt;
+    private LocalDateTime endsAt;
+}
@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_attendance_session_student", columnNames = {"session_id", "student_id"}))
 public class Attendance {
 
     @Id
@@ -0,0 +1,35 @@
+package Capstone.QR.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "attendance_counter",
+        uniqueConstraints = @UniqueConstraint(name = "uk_attendance_counter_klass_student", columnNames = {"klass_id", "student_id"}))
+@Data
+@NoArgsConstructor
+public class AttendanceCounter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "klass_id", nullable = false)
+    private Long klassId;
+
+    @Column(name = "student_id", nullable = false)
+    private Long studentId;
+
+    private int present;
+
+    private int absent;
+
+    private int excused;
+
+    private int pending;
+
+    // Incremented by every delta and rebuild, so its sum over a class changes whenever any count does
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+}
@@ -4,10 +4,16 @@ import jakarta.persistence.*;
 import lombok.Data;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_class_session_date", columnList = "session_date"),
+        @Index(name = "idx_class_session_starts_at", columnList = "starts_at"),
+        @Index(name = "idx_class_session_ends_at", columnList = "ends_at")
+})
 @Data
 public class ClassSession {
 
@@ -33,7 +39,18 @@ public class ClassSession {
     @Column(nullable = false)
     private LocalTime sessionTime;
 
+    // sessionDate + sessionTime, and that plus the class duration; kept in sync by GenerateSessions.schedule
+    private LocalDateTime startsAt;
+
+    private LocalDateTime endsAt;
+
     private String topic;
 
     private boolean canceled = false;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "varchar(16) default 'OPEN'")
+    private FinalizationState finalizationState = FinalizationState.OPEN;
+
+    private LocalDateTime finalizationClaimedAt;
 }
@@ -0,0 +1,5 @@
+package Capstone.QR.model;
+
+public enum FinalizationState {
+    OPEN, FINALIZING, FINALIZED
+}
@@ -0,0 +1,30 @@
+package Capstone.QR.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Every non-canceled session that ended at or before {@code finalizedThrough} is finalized.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FinalizationWatermark {
+
+    public static final String SESSIONS = "session-finalization";
+
+    @Id
+    private String name;
+
+    @Column(nullable = false)
+    private LocalDateTime finalizedThrough;
+
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,31 @@
+package Capstone.QR.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A named lock held by one app instance until {@code lockedUntil}.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class JobLease {
+
+    @Id
+    private String name;
+
+    @Column(nullable = false)
+    private String owner;
+
+    private LocalDateTime lockedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime lockedUntil;
+}
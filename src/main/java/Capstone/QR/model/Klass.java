@@ -37,6 +37,10 @@ public class Klass {
     @Column(nullable = false)
     private int durationMinutes;
 
+    // Bumped when the roster or the session schedule changes; part of the export cache key
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long contentVersion;
+
     private LocalDate startDate;
     private LocalDate endDate;
     @ElementCollection
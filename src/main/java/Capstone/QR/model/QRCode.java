@@ -22,7 +22,13 @@ public class QRCode {
     private ClassSession session;
     private LocalDateTime sessionDate;
 
-    @Lob
+    @Column(unique = true, length = 22)
+    private String scanToken;
+
+    @Transient
+    private String qrText;
+
+    @Transient
     private String qrCodeData;
     private LocalDateTime expiresAt;
 
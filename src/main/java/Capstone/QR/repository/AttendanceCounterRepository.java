@@ -0,0 +1,77 @@
+package Capstone.QR.repository;
+
+import Capstone.QR.model.AttendanceCounter;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AttendanceCounterRepository extends JpaRepository<AttendanceCounter, Long> {
+    List<AttendanceCounter> findByKlassId(Long klassId);
+
+    Optional<AttendanceCounter> findByKlassIdAndStudentId(Long klassId, Long studentId);
+
+    @Query("SELECT DISTINCT s.klass.id FROM ClassSession s")
+    List<Long> findClassIdsWithSessions();
+
+    /**
+     * Counts the ABSENT rows {@link AttendanceRepository#insertAbsentForUnrecorded} is about to insert;
+     * must run right before it in the same transaction, with the session's attendance rows locked.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO attendance_counter (klass_id, student_id, present, absent, excused, pending, version) " +
+            "SELECT ks.klass_id, ks.student_id, 0, 1, 0, 0, 1 FROM klass_student ks " +
+            "WHERE ks.klass_id = :classId AND ks.approved = TRUE " +
+            "AND NOT EXISTS (SELECT 1 FROM attendance a WHERE a.session_id = :sessionId AND a.student_id = ks.student_id) " +
+            "ON DUPLICATE KEY UPDATE absent = attendance_counter.absent + 1, version = attendance_counter.version + 1",
+            nativeQuery = true)
+    int addAbsentForUnrecorded(@Param("sessionId") Long sessionId, @Param("classId") Long classId);
+
+    /**
+     * Counts the PENDING rows {@link AttendanceRepository#markPendingAbsentWithoutRequest} is about to
+     * close; must run right before it in the same transaction, with the session's attendance and
+     * request rows locked.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE attendance_counter c SET pending = c.pending - 1, absent = c.absent + 1, version = c.version + 1 " +
+            "WHERE c.klass_id = :classId AND EXISTS (SELECT 1 FROM attendance a " +
+            "WHERE a.session_id = :sessionId AND a.student_id = c.student_id AND a.status = 'PENDING' " +
+            "AND NOT EXISTS (SELECT 1 FROM attendance_request r WHERE r.session_id = a.session_id AND r.student_id = a.student_id))",
+            nativeQuery = true)
+    int movePendingToAbsentWithoutRequest(@Param("sessionId") Long sessionId, @Param("classId") Long classId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE AttendanceCounter c SET c.present = 0, c.absent = 0, c.excused = 0, c.pending = 0, c.version = c.version + 1 " +
+            "WHERE c.klassId = :classId")
+    int resetForClass(@Param("classId") Long classId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO attendance_counter (klass_id, student_id, present, absent, excused, pending, version) " +
+            "SELECT cs.klass_id, a.student_id, " +
+            "SUM(CASE WHEN a.status = 'PRESENT' THEN 1 ELSE 0 END), SUM(CASE WHEN a.status = 'ABSENT' THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN a.status = 'EXCUSED' THEN 1 ELSE 0 END), SUM(CASE WHEN a.status = 'PENDING' THEN 1 ELSE 0 END), 1 " +
+            "FROM attendance a JOIN class_session cs ON cs.id = a.session_id " +
+            "WHERE cs.klass_id = :classId GROUP BY cs.klass_id, a.student_id " +
+            "ON DUPLICATE KEY UPDATE present = VALUES(present), absent = VALUES(absent), " +
+            "excused = VALUES(excused), pending = VALUES(pending), version = attendance_counter.version + 1",
+            nativeQuery = true)
+    int rebuildForClass(@Param("classId") Long classId);
+
+    @Query("SELECT COUNT(c), COALESCE(SUM(c.version), 0) FROM AttendanceCounter c WHERE c.klassId = :classId")
+    List<Object[]> findVersionSummary(@Param("classId") Long classId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM AttendanceCounter c WHERE c.klassId = :classId")
+    void deleteByKlassId(@Param("classId") Long classId);
+}
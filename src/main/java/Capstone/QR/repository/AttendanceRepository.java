@@ -2,15 +2,21 @@ package Capstone.QR.repository;
 
 import Capstone.QR.model.Attendance;
 import Capstone.QR.model.AttendanceStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
@@ -22,17 +28,97 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
 
     List<Attendance> findBySession_Id(Long sessionId);
 
+    @Query("SELECT a FROM Attendance a JOIN FETCH a.student WHERE a.session.id = :sessionId")
+    List<Attendance> findBySessionIdWithStudent(@Param("sessionId") Long sessionId);
+
     Optional<Attendance> findBySession_IdAndStudent_Id(Long sessionId, Long studentId);
 
     List<Attendance> findBySession_IdAndStatus(Long sessionId, AttendanceStatus status);
 
     long countBySession_Klass_IdAndStudent_IdAndStatus(Long classId, Long studentId, AttendanceStatus status);
 
+    /**
+     * Forward-only cursor over a class's attendance with student and session fetched in the same
+     * row; must be consumed inside a transaction. On MySQL the fetch size only streams because the
+     * datasource URL sets {@code useCursorFetch=true}; without it the driver buffers the whole result.
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT a FROM Attendance a JOIN FETCH a.student st JOIN FETCH a.session s " +
+            "WHERE s.klass.id = :classId ORDER BY s.sessionDate, s.sessionTime, st.name")
+    Stream<Attendance> streamByClassId(@Param("classId") Long classId);
+
+    /**
+     * One row per (approved student, session) of the class with the attendance status, null when
+     * nothing is recorded; ordered by student so a pivot can be built in one pass.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT st.id AS studentId, st.name AS studentName, st.email AS studentEmail, " +
+            "s.id AS sessionId, a.status AS status " +
+            "FROM KlassStudent ks JOIN ks.student st " +
+            "LEFT JOIN ClassSession s ON s.klass = ks.klass " +
+            "LEFT JOIN Attendance a ON a.session = s AND a.student = st " +
+            "WHERE ks.klass.id = :classId AND ks.approved = true ORDER BY st.name, st.id")
+    Stream<StudentSessionStatus> streamRosterStatusesByClassId(@Param("classId") Long classId);
+
+    @Query("SELECT a.student.id AS studentId, a.status AS status, COUNT(a) AS total FROM Attendance a " +
+            "WHERE a.session.klass.id = :classId GROUP BY a.student.id, a.status")
+    List<StudentStatusCount> countByStudentAndStatusForClass(@Param("classId") Long classId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Attendance a WHERE a.id = :id")
+    Optional<Attendance> findByIdForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Attendance a WHERE a.session.id = :sessionId AND a.student.id = :studentId")
+    Optional<Attendance> findBySessionIdAndStudentIdForUpdate(@Param("sessionId") Long sessionId,
+                                                              @Param("studentId") Long studentId);
+
     @Transactional
     @Modifying
     @Query("DELETE FROM Attendance a WHERE a.session.id IN :sessionIds")
     void deleteBySessionIds(@Param("sessionIds") List<Long> sessionIds);
 
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO attendance (session_id, student_id, status, recorded_at) " +
+            "VALUES (:sessionId, :studentId, :status, :recordedAt) " +
+            "ON DUPLICATE KEY UPDATE recorded_at = VALUES(recorded_at), status = VALUES(status)",
+            nativeQuery = true)
+    int upsertStatus(@Param("sessionId") Long sessionId,
+                     @Param("studentId") Long studentId,
+                     @Param("status") String status,
+                     @Param("recordedAt") LocalDateTime recordedAt);
+
+    /**
+     * Locks a session's rows, and on MySQL the index gap they sit in, so no row of the session can
+     * be inserted or changed until the caller's transaction ends.
+     */
+    @Query(value = "SELECT a.id FROM attendance a WHERE a.session_id = :sessionId FOR UPDATE", nativeQuery = true)
+    List<Long> lockBySessionId(@Param("sessionId") Long sessionId);
+
+    // Plain INSERT: with the session locked nothing can race it, and the count is exactly the rows inserted
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO attendance (session_id, student_id, status, recorded_at) " +
+            "SELECT :sessionId, ks.student_id, 'ABSENT', :recordedAt FROM klass_student ks " +
+            "WHERE ks.klass_id = :classId AND ks.approved = TRUE " +
+            "AND NOT EXISTS (SELECT 1 FROM attendance a WHERE a.session_id = :sessionId AND a.student_id = ks.student_id)",
+            nativeQuery = true)
+    int insertAbsentForUnrecorded(@Param("sessionId") Long sessionId,
+                                  @Param("classId") Long classId,
+                                  @Param("recordedAt") LocalDateTime recordedAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Attendance a SET a.status = Capstone.QR.model.AttendanceStatus.ABSENT, a.recordedAt = :recordedAt " +
+            "WHERE a.session.id = :sessionId AND a.status = Capstone.QR.model.AttendanceStatus.PENDING " +
+            "AND NOT EXISTS (SELECT r FROM AttendanceRequest r WHERE r.session = a.session AND r.student = a.student)")
+    int markPendingAbsentWithoutRequest(@Param("sessionId") Long sessionId,
+                                        @Param("recordedAt") LocalDateTime recordedAt);
+
 
 }
 
@@ -24,4 +24,7 @@ public interface AttendanceRequestRepository extends JpaRepository<AttendanceReq
     void deleteBySessionIds(@Param("sessionIds") List<Long> sessionIds);
 
     List<AttendanceRequest> findAllByStudentId(Long id);
+
+    @Query(value = "SELECT r.id FROM attendance_request r WHERE r.session_id = :sessionId FOR UPDATE", nativeQuery = true)
+    List<Long> lockBySessionId(@Param("sessionId") Long sessionId);
 }
@@ -8,12 +8,15 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 public interface ClassSessionRepository extends JpaRepository<ClassSession, Long> {
     List<ClassSession> findByKlassIdOrderBySessionDateAsc(Long klassId);
 
+    List<ClassSession> findByKlassIdOrderByStartsAtAscIdAsc(Long klassId);
+
     List<ClassSession> findByKlassIdAndCanceledFalse(Long klassId);
 
     Optional<ClassSession> findByKlassIdAndSessionDate(Long klassId, LocalDate date);
@@ -29,6 +32,9 @@ public interface ClassSessionRepository extends JpaRepository<ClassSession, Long
     List<ClassSession> findAllByTeacherIdAndDate(@Param("teacherId") Long teacherId, @Param("date") LocalDate date);
 
 
+    @Query("SELECT COUNT(s) FROM ClassSession s WHERE s.klass.id = :classId AND s.canceled = false AND s.startsAt <= :now")
+    long countHeldSessions(@Param("classId") Long classId, @Param("now") LocalDateTime now);
+
     @Transactional
     @Modifying
     @Query("DELETE FROM ClassSession cs WHERE cs.klass.id = :klassId")
@@ -37,4 +43,54 @@ public interface ClassSessionRepository extends JpaRepository<ClassSession, Long
 
     @Query("SELECT cs.id FROM ClassSession cs WHERE cs.klass.id = :klassId")
     List<Long> findSessionIdsByClassId(@Param("klassId") Long klassId);
+
+    @Query("SELECT s FROM ClassSession s JOIN FETCH s.klass WHERE s.canceled = false " +
+            "AND s.finalizationState <> Capstone.QR.model.FinalizationState.FINALIZED AND s.endsAt > :after ORDER BY s.endsAt")
+    List<ClassSession> findUnfinalizedEndingAfter(@Param("after") LocalDateTime after);
+
+    @Query("SELECT s FROM ClassSession s JOIN FETCH s.klass WHERE s.canceled = false " +
+            "AND s.finalizationState <> Capstone.QR.model.FinalizationState.FINALIZED " +
+            "AND s.endsAt > :from AND s.endsAt <= :to ORDER BY s.endsAt")
+    List<ClassSession> findUnfinalizedEndedBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT s FROM ClassSession s JOIN FETCH s.klass k WHERE k.teacher.id = :teacherId AND s.canceled = false " +
+            "AND s.startsAt <= :now AND s.endsAt > :now ORDER BY s.startsAt")
+    List<ClassSession> findLiveByTeacherId(@Param("teacherId") Long teacherId, @Param("now") LocalDateTime now);
+
+    @Query("SELECT s.id FROM ClassSession s WHERE s.klass.id = :klassId AND s.canceled = false " +
+            "AND s.startsAt <= :now AND s.endsAt > :now")
+    List<Long> findLiveIdsByClassId(@Param("klassId") Long klassId, @Param("now") LocalDateTime now);
+
+    @Query("SELECT s FROM ClassSession s JOIN FETCH s.klass k WHERE k.teacher.id = :teacherId AND s.canceled = false " +
+            "AND s.startsAt > :from AND s.startsAt <= :to ORDER BY s.startsAt")
+    List<ClassSession> findStartingBetweenByTeacherId(@Param("teacherId") Long teacherId,
+                                                      @Param("from") LocalDateTime from,
+                                                      @Param("to") LocalDateTime to);
+
+    @Query("SELECT s FROM ClassSession s JOIN FETCH s.klass WHERE s.startsAt IS NULL OR s.endsAt IS NULL")
+    List<ClassSession> findWithoutStartsOrEnds();
+
+    /**
+     * Claims an OPEN session, or one whose FINALIZING claim is older than {@code staleBefore}.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ClassSession s SET s.finalizationState = Capstone.QR.model.FinalizationState.FINALIZING, " +
+            "s.finalizationClaimedAt = :now WHERE s.id = :sessionId " +
+            "AND (s.finalizationState = Capstone.QR.model.FinalizationState.OPEN " +
+            "OR (s.finalizationState = Capstone.QR.model.FinalizationState.FINALIZING AND s.finalizationClaimedAt < :staleBefore))")
+    int claimForFinalization(@Param("sessionId") Long sessionId,
+                             @Param("now") LocalDateTime now,
+                             @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ClassSession s SET s.finalizationState = Capstone.QR.model.FinalizationState.FINALIZED WHERE s.id = :sessionId")
+    int markFinalized(@Param("sessionId") Long sessionId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ClassSession s SET s.finalizationState = Capstone.QR.model.FinalizationState.OPEN, s.finalizationClaimedAt = null " +
+            "WHERE s.id = :sessionId AND s.finalizationState = Capstone.QR.model.FinalizationState.FINALIZING")
+    int releaseFinalizationClaim(@Param("sessionId") Long sessionId);
 }
@@ -0,0 +1,9 @@
+package Capstone.QR.repository;
+
+import Capstone.QR.model.FinalizationWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface FinalizationWatermarkRepository extends JpaRepository<FinalizationWatermark, String> {
+}
@@ -0,0 +1,41 @@
+package Capstone.QR.repository;
+
+import Capstone.QR.model.JobLease;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE JobLease l SET l.owner = :owner, l.lockedAt = :now, l.lockedUntil = :until " +
+            "WHERE l.name = :name AND (l.owner = :owner OR l.lockedUntil <= :now)")
+    int takeOver(@Param("name") String name,
+                 @Param("owner") String owner,
+                 @Param("now") LocalDateTime now,
+                 @Param("until") LocalDateTime until);
+
+    // INSERT IGNORE reports 0 for an existing row; ON DUPLICATE KEY UPDATE reports 1 under Connector/J's found-rows default
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO job_lease (name, owner, locked_at, locked_until) VALUES (:name, :owner, :now, :until)",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("name") String name,
+                       @Param("owner") String owner,
+                       @Param("now") LocalDateTime now,
+                       @Param("until") LocalDateTime until);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE JobLease l SET l.lockedUntil = :until WHERE l.name = :name AND l.owner = :owner")
+    int release(@Param("name") String name,
+                @Param("owner") String owner,
+                @Param("until") LocalDateTime until);
+}
@@ -2,7 +2,11 @@ package Capstone.QR.repository;
 
 import Capstone.QR.model.Klass;
 import Capstone.QR.model.Teacher;
+import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -16,5 +20,10 @@ public interface KlassRepository extends JpaRepository<Klass, Long> {
 
 
     boolean existsByTeacherAndName(Teacher teacher, String name);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Klass k SET k.contentVersion = k.contentVersion + 1 WHERE k.id = :classId")
+    int bumpContentVersion(@Param("classId") Long classId);
 }
 
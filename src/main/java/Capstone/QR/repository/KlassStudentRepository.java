@@ -32,6 +32,9 @@ public interface KlassStudentRepository extends JpaRepository<KlassStudent, Long
             """)
     List<Student> findApprovedStudentsByClassId(@Param("classId") Long classId);
 
+    @Query("SELECT ks.student.id FROM KlassStudent ks WHERE ks.klass.id = :classId AND ks.approved = true")
+    List<Long> findApprovedStudentIdsByClassId(@Param("classId") Long classId);
+
 
     @Transactional
     @Modifying
@@ -13,10 +13,18 @@ import java.util.Optional;
 
 @Repository
 public interface QRCodeRepository extends JpaRepository<QRCode, Long> {
-    Optional<QRCode> findByQrCodeData(String qrCodeData);
+    Optional<QRCode> findByScanToken(String scanToken);
 
     Optional<QRCode> findBySessionId(Long sessionId);
 
+    // Everything an ActiveSessionRegistry snapshot reads, in one query, so it can be built outside a transaction
+    @Query("SELECT q FROM QRCode q JOIN FETCH q.session s JOIN FETCH s.klass k LEFT JOIN FETCH k.allowedWifiSSIDs " +
+            "WHERE q.scanToken = :scanToken")
+    Optional<QRCode> findSnapshotByScanToken(@Param("scanToken") String scanToken);
+
+    @Query("SELECT q FROM QRCode q JOIN FETCH q.session s JOIN FETCH s.klass k LEFT JOIN FETCH k.allowedWifiSSIDs " +
+            "WHERE s.id = :sessionId")
+    Optional<QRCode> findSnapshotBySessionId(@Param("sessionId") Long sessionId);
 
     @Transactional
     @Modifying
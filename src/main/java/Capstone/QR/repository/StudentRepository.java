@@ -2,6 +2,8 @@ package Capstone.QR.repository;
 
 import Capstone.QR.model.Student;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -9,5 +11,8 @@ import java.util.Optional;
 @Repository
 public interface StudentRepository extends JpaRepository<Student, Long> {
     Optional<Student> findByEmail(String email);
+
+    @Query("SELECT s.id FROM Student s WHERE s.email = :email")
+    Optional<Long> findIdByEmail(@Param("email") String email);
 }
 
@@ -0,0 +1,15 @@
+package Capstone.QR.repository;
+
+import Capstone.QR.model.AttendanceStatus;
+
+public interface StudentSessionStatus {
+    Long getStudentId();
+
+    String getStudentName();
+
+    String getStudentEmail();
+
+    Long getSessionId();
+
+    AttendanceStatus getStatus();
+}
@@ -0,0 +1,11 @@
+package Capstone.QR.repository;
+
+import Capstone.QR.model.AttendanceStatus;
+
+public interface StudentStatusCount {
+    Long getStudentId();
+
+    AttendanceStatus getStatus();
+
+    long getTotal();
+}
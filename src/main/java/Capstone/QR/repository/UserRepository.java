@@ -2,12 +2,24 @@ package Capstone.QR.repository;
 
 import Capstone.QR.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
-}
 
+    /**
+     * Id, name and email of every student a class export can mention: the enrolled students and
+     * anyone with an attendance row in one of its sessions.
+     */
+    @Query("SELECT u.id, u.name, u.email FROM User u " +
+            "WHERE u.id IN (SELECT ks.student.id FROM KlassStudent ks WHERE ks.klass.id = :classId) " +
+            "OR u.id IN (SELECT a.student.id FROM Attendance a WHERE a.session.klass.id = :classId) " +
+            "ORDER BY u.id")
+    List<Object[]> findRosterProfiles(@Param("classId") Long classId);
+}
@@ -0,0 +1,18 @@
+package Capstone.QR.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+@Getter
+public class AuthenticatedUser extends User {
+
+    private final Long id;
+
+    public AuthenticatedUser(Long id, String email, String password, Collection<? extends GrantedAuthority> authorities) {
+        super(email, password, authorities);
+        this.id = id;
+    }
+}
@@ -0,0 +1,116 @@
+package Capstone.QR.service;
+
+import Capstone.QR.model.ClassSession;
+import Capstone.QR.model.Klass;
+import Capstone.QR.model.QRCode;
+import Capstone.QR.repository.QRCodeRepository;
+import Capstone.QR.utils.Geofence;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable snapshots of the sessions that currently have a live QR code, so that scan validation
+ * does not need to touch the database. Snapshots are registered when a QR is generated, loaded on
+ * demand on a miss (e.g. after a restart or on another node), and dropped when they expire or when
+ * anything they were built from changes. Class membership is checked against
+ * {@link EnrollmentCache}. Static tokens are mapped to their session here; rotating tokens carry the
+ * session id and are verified by {@link QrTokenService}, and only when rotating mode is on.
+ */
+@Service
+@RequiredArgsConstructor
+public class ActiveSessionRegistry {
+
+    private final QRCodeRepository qrCodeRepository;
+    private final QrTokenService qrTokenService;
+
+    private final Map<Long, ActiveSession> sessionsById = new ConcurrentHashMap<>();
+    private final Map<String, Long> sessionIdsByToken = new ConcurrentHashMap<>();
+
+    public record ActiveSession(
+            Long sessionId,
+            Long classId,
+            Geofence geofence,
+            Set<String> allowedSSIDs,
+            LocalDateTime expiresAt
+    ) {
+        public boolean isExpired(LocalDateTime now) {
+            return expiresAt != null && now.isAfter(expiresAt);
+        }
+    }
+
+    public ActiveSession register(QRCode qrCode) {
+        ClassSession session = qrCode.getSession();
+        Klass klass = session.getKlass();
+
+        ActiveSession snapshot = new ActiveSession(
+                session.getId(),
+                klass.getId(),
+                Geofence.around(qrCode.getLatitude(), qrCode.getLongitude(), klass.getAcceptanceRadiusMeters()),
+                klass.getAllowedWifiSSIDs() == null ? Set.of() : Set.copyOf(klass.getAllowedWifiSSIDs()),
+                qrCode.getExpiresAt()
+        );
+
+        sessionIdsByToken.values().remove(session.getId());
+        sessionsById.put(session.getId(), snapshot);
+        if (qrCode.getScanToken() != null) {
+            sessionIdsByToken.put(qrCode.getScanToken(), session.getId());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Resolves a scan token to its snapshot, loading it from the database on a miss.
+     * An empty result means the token is unknown; QR expiry is left to the caller.
+     */
+    public Optional<ActiveSession> resolve(String scanToken) {
+        // In static mode the secret may be the public default, so a signed token is just an unknown one
+        if (qrTokenService.isRotating() && qrTokenService.isSigned(scanToken)) {
+            return resolveSession(qrTokenService.verify(scanToken));
+        }
+
+        Long sessionId = sessionIdsByToken.get(scanToken);
+        ActiveSession cached = sessionId == null ? null : sessionsById.get(sessionId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return qrCodeRepository.findSnapshotByScanToken(scanToken).map(this::register);
+    }
+
+    public Optional<ActiveSession> resolveSession(Long sessionId) {
+        ActiveSession cached = sessionsById.get(sessionId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return qrCodeRepository.findSnapshotBySessionId(sessionId).map(this::register);
+    }
+
+    public void evictSession(Long sessionId) {
+        sessionsById.remove(sessionId);
+        sessionIdsByToken.values().remove(sessionId);
+    }
+
+    public void evictClass(Long classId) {
+        sessionsById.values().stream()
+                .filter(s -> s.classId().equals(classId))
+                .map(ActiveSession::sessionId)
+                .toList()
+                .forEach(this::evictSession);
+    }
+
+    @Scheduled(fixedRate = 60_000)
+    public void evictExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        sessionsById.values().stream()
+                .filter(s -> s.isExpired(now))
+                .map(ActiveSession::sessionId)
+                .toList()
+                .forEach(this::evictSession);
+    }
+}
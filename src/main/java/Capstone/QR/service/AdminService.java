@@ -4,6 +4,7 @@ package Capstone.QR.service;
 import Capstone.QR.dto.Response.AdminClassResponse;
 import Capstone.QR.dto.Response.PendingTeacherResponse;
 import Capstone.QR.dto.Response.StudentInClassResponse;
+import Capstone.QR.model.AttendanceStatus;
 import Capstone.QR.model.Klass;
 import Capstone.QR.model.KlassStudent;
 import Capstone.QR.model.Teacher;
@@ -13,7 +14,10 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,6 +31,9 @@ public class AdminService {
     private final AttendanceRepository attendanceRepository;
     private final ClassSessionRepository classSessionRepository;
     private final AttendanceRequestRepository attendanceRequestRepository;
+    private final AttendanceCounterRepository attendanceCounterRepository;
+    private final ActiveSessionRegistry activeSessionRegistry;
+    private final EnrollmentCache enrollmentCache;
 
     public void approveTeacher(Long teacherId) {
         Teacher teacher = teacherRepository.findById(teacherId)
@@ -57,8 +64,11 @@ public class AdminService {
         classSessionRepository.deleteByKlassId(classId);
 
         klassStudentRepository.deleteByKlassId(classId);
+        attendanceCounterRepository.deleteByKlassId(classId);
 
         klassRepository.delete(klass);
+        activeSessionRegistry.evictClass(classId);
+        enrollmentCache.evictClass(classId);
     }
 
 
@@ -74,14 +84,24 @@ public class AdminService {
 
 
     public List<StudentInClassResponse> getStudentsInClass(Long classId) {
-        List<KlassStudent> klassStudents = klassStudentRepository.findByKlassIdAndApprovedTrue(classId);
-
-        return klassStudents.stream()
-                .map(ks -> new StudentInClassResponse(
-                        ks.getStudent().getId(),
-                        ks.getStudent().getName(),
-                        ks.getStudent().getEmail(),
-                        ks.getStudent().getProfileImageUrl()))
+        Map<Long, Map<AttendanceStatus, Long>> counts = new HashMap<>();
+        for (StudentStatusCount row : attendanceRepository.countByStudentAndStatusForClass(classId)) {
+            counts.computeIfAbsent(row.getStudentId(), id -> new EnumMap<>(AttendanceStatus.class))
+                    .put(row.getStatus(), row.getTotal());
+        }
+
+        return klassStudentRepository.findApprovedStudentsByClassId(classId).stream()
+                .map(student -> {
+                    Map<AttendanceStatus, Long> studentCounts = counts.getOrDefault(student.getId(), Map.of());
+                    return new StudentInClassResponse(
+                            student.getId(),
+                            student.getName(),
+                            student.getEmail(),
+                            student.getProfileImageUrl(),
+                            studentCounts.getOrDefault(AttendanceStatus.PRESENT, 0L).intValue(),
+                            studentCounts.getOrDefault(AttendanceStatus.ABSENT, 0L).intValue(),
+                            studentCounts.getOrDefault(AttendanceStatus.EXCUSED, 0L).intValue());
+                })
                 .collect(Collectors.toList());
     }
 
@@ -108,6 +128,8 @@ public class AdminService {
                 .orElseThrow(() -> new RuntimeException("Student is not enrolled in this class"));
 
         klassStudentRepository.delete(join);
+        klassRepository.bumpContentVersion(classId);
+        enrollmentCache.studentRemoved(classId, studentId);
     }
 
 }
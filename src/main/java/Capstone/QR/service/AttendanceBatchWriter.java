@@ -0,0 +1,80 @@
+package Capstone.QR.service;
+
+import Capstone.QR.model.AttendanceStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the attendance rows of many students of one session in a single JDBC batch, keeping the
+ * counters and live feed in step for the rows that were actually inserted. Rows that already exist
+ * are left untouched, so concurrent callers cannot create duplicates.
+ * <p>
+ * INSERT IGNORE reports 0 for a skipped duplicate whatever the driver's found-rows setting, which
+ * ON DUPLICATE KEY UPDATE does not, so only rows this call created get a counter delta. A driver
+ * that rewrites the batch (Connector/J with rewriteBatchedStatements=true) reports
+ * {@link Statement#SUCCESS_NO_INFO} instead; the class's counters are then rebuilt from its rows
+ * and the live feed catches up on its next resync.
+ */
+@Slf4j
+@Service
+public class AttendanceBatchWriter {
+
+    private static final String INSERT_IF_ABSENT =
+            "INSERT IGNORE INTO attendance (session_id, student_id, status, recorded_at) " +
+                    "VALUES (:sessionId, :studentId, :status, :recordedAt)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final AttendanceCounterService attendanceCounterService;
+    private final SessionLiveFeed sessionLiveFeed;
+
+    public AttendanceBatchWriter(NamedParameterJdbcTemplate jdbcTemplate,
+                                 AttendanceCounterService attendanceCounterService,
+                                 SessionLiveFeed sessionLiveFeed) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.attendanceCounterService = attendanceCounterService;
+        this.sessionLiveFeed = sessionLiveFeed;
+    }
+
+    /**
+     * Must run inside the caller's transaction so the rows and their counter deltas commit together.
+     *
+     * @return the number of rows inserted, or {@link Statement#SUCCESS_NO_INFO} if the driver did not report it
+     */
+    public int insertMissing(Long classId, Long sessionId, List<Long> studentIds, AttendanceStatus status) {
+        if (studentIds.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        MapSqlParameterSource[] params = studentIds.stream()
+                .map(studentId -> new MapSqlParameterSource()
+                        .addValue("sessionId", sessionId)
+                        .addValue("studentId", studentId)
+                        .addValue("status", status.name())
+                        .addValue("recordedAt", now))
+                .toArray(MapSqlParameterSource[]::new);
+        int[] results = jdbcTemplate.batchUpdate(INSERT_IF_ABSENT, params);
+
+        List<AttendanceCounterService.Transition> inserted = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == Statement.SUCCESS_NO_INFO) {
+                log.warn("Driver did not report which attendance rows of session {} were inserted, rebuilding counters of class {}",
+                        sessionId, classId);
+                attendanceCounterService.rebuildClass(classId);
+                return Statement.SUCCESS_NO_INFO;
+            }
+            if (results[i] == 1) {
+                inserted.add(new AttendanceCounterService.Transition(sessionId, studentIds.get(i), null, status));
+            }
+        }
+        attendanceCounterService.transitions(inserted);
+        inserted.forEach(t -> sessionLiveFeed.statusChanged(sessionId, t.studentId(), null, status));
+        return inserted.size();
+    }
+}
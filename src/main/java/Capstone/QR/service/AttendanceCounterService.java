@@ -0,0 +1,142 @@
+package Capstone.QR.service;
+
+import Capstone.QR.model.AttendanceCounter;
+import Capstone.QR.model.AttendanceStatus;
+import Capstone.QR.repository.AttendanceCounterRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Per (class, student) attendance counters, so summaries read one row per student instead of
+ * recounting every attendance row of the semester. Each status transition applies its delta in the
+ * transaction that changes the attendance row; the callers lock the row first so the delta matches
+ * what was actually written. {@link #rebuildAll()} reconciles the counters from the raw rows nightly
+ * and on a fresh database.
+ */
+@Slf4j
+@Service
+public class AttendanceCounterService {
+
+    public record Transition(Long sessionId, Long studentId, AttendanceStatus from, AttendanceStatus to) {
+    }
+
+    private static final String APPLY_DELTA =
+            "INSERT INTO attendance_counter (klass_id, student_id, present, absent, excused, pending, version) " +
+                    "SELECT cs.klass_id, :studentId, :present, :absent, :excused, :pending, 1 FROM class_session cs WHERE cs.id = :sessionId " +
+                    "ON DUPLICATE KEY UPDATE version = attendance_counter.version + 1, " +
+                    "present = attendance_counter.present + VALUES(present), " +
+                    "absent = attendance_counter.absent + VALUES(absent), " +
+                    "excused = attendance_counter.excused + VALUES(excused), " +
+                    "pending = attendance_counter.pending + VALUES(pending)";
+
+    private final AttendanceCounterRepository attendanceCounterRepository;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLeaseService jobLeaseService;
+
+    public AttendanceCounterService(AttendanceCounterRepository attendanceCounterRepository,
+                                    NamedParameterJdbcTemplate jdbcTemplate,
+                                    TransactionTemplate transactionTemplate,
+                                    JobLeaseService jobLeaseService) {
+        this.attendanceCounterRepository = attendanceCounterRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.jobLeaseService = jobLeaseService;
+    }
+
+    public void transition(Long sessionId, Long studentId, AttendanceStatus from, AttendanceStatus to) {
+        if (from != to) {
+            jdbcTemplate.update(APPLY_DELTA, delta(new Transition(sessionId, studentId, from, to)));
+        }
+    }
+
+    public void transitions(List<Transition> transitions) {
+        MapSqlParameterSource[] params = transitions.stream()
+                .filter(t -> t.from() != t.to())
+                .map(AttendanceCounterService::delta)
+                .toArray(MapSqlParameterSource[]::new);
+        if (params.length > 0) {
+            jdbcTemplate.batchUpdate(APPLY_DELTA, params);
+        }
+    }
+
+    public AttendanceCounter getCounter(Long classId, Long studentId) {
+        return attendanceCounterRepository.findByKlassIdAndStudentId(classId, studentId)
+                .orElseGet(() -> {
+                    AttendanceCounter empty = new AttendanceCounter();
+                    empty.setKlassId(classId);
+                    empty.setStudentId(studentId);
+                    return empty;
+                });
+    }
+
+    public Map<Long, AttendanceCounter> getCountersForClass(Long classId) {
+        return attendanceCounterRepository.findByKlassId(classId).stream()
+                .collect(Collectors.toMap(AttendanceCounter::getStudentId, Function.identity()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        if (attendanceCounterRepository.count() == 0) {
+            rebuildExclusively();
+        }
+    }
+
+    @Scheduled(cron = "${attendance.counters.rebuild-cron:0 30 3 * * *}")
+    public void rebuildExclusively() {
+        jobLeaseService.runExclusively("attendance-counter-rebuild", Duration.ofHours(1), Duration.ofMinutes(30), this::rebuildAll);
+    }
+
+    /**
+     * Recomputes one class's counters from its attendance rows, in the caller's transaction.
+     */
+    public void rebuildClass(Long classId) {
+        attendanceCounterRepository.resetForClass(classId);
+        attendanceCounterRepository.rebuildForClass(classId);
+    }
+
+    /**
+     * Recomputes every class's counters from its attendance rows, one class per transaction.
+     */
+    public void rebuildAll() {
+        long started = System.currentTimeMillis();
+        List<Long> classIds = attendanceCounterRepository.findClassIdsWithSessions();
+        for (Long classId : classIds) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> rebuildClass(classId));
+            } catch (RuntimeException e) {
+                log.error("Failed to rebuild attendance counters for class {}", classId, e);
+            }
+        }
+        log.info("Rebuilt attendance counters for {} classes in {} ms", classIds.size(), System.currentTimeMillis() - started);
+    }
+
+    private static MapSqlParameterSource delta(Transition transition) {
+        int[] delta = new int[AttendanceStatus.values().length];
+        if (transition.from() != null) {
+            delta[transition.from().ordinal()]--;
+        }
+        if (transition.to() != null) {
+            delta[transition.to().ordinal()]++;
+        }
+        return new MapSqlParameterSource()
+                .addValue("sessionId", transition.sessionId())
+                .addValue("studentId", transition.studentId())
+                .addValue("present", delta[AttendanceStatus.PRESENT.ordinal()])
+                .addValue("absent", delta[AttendanceStatus.ABSENT.ordinal()])
+                .addValue("excused", delta[AttendanceStatus.EXCUSED.ordinal()])
+                .addValue("pending", delta[AttendanceStatus.PENDING.ordinal()]);
+    }
+}
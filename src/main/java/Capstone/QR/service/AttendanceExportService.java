@@ -2,54 +2,429 @@ package Capstone.QR.service;
 
 
 import Capstone.QR.model.Attendance;
+import Capstone.QR.model.AttendanceStatus;
+import Capstone.QR.model.ClassSession;
 import Capstone.QR.model.Klass;
 import Capstone.QR.repository.AttendanceRepository;
+import Capstone.QR.repository.ClassSessionRepository;
 import Capstone.QR.repository.KlassRepository;
-import lombok.RequiredArgsConstructor;
+import Capstone.QR.repository.StudentSessionStatus;
+import jakarta.persistence.EntityManager;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
+/**
+ * Writes attendance exports straight to the response. Rows come from a fetch-joined cursor and go
+ * through a windowed SXSSF workbook that spills older rows to a temp file, so memory stays flat
+ * whatever the class size. The cursor is read inside a read-only transaction that ends before the
+ * workbook is written out, so a slow client does not hold a database connection.
+ * <p>
+ * {@link Layout#FLAT} writes one row per attendance record; {@link Layout#PIVOT} writes one row
+ * per student with a column per session, totals and a flag for students at the absence limit.
+ * CSV and NDJSON ({@link TextFormat}) skip the workbook and the entities altogether.
+ */
 @Service
-@RequiredArgsConstructor
 public class AttendanceExportService {
 
+    public enum Layout {
+        FLAT,
+        PIVOT
+    }
+
+    public enum TextFormat {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        TextFormat(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    public static final String XLSX_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    private static final String TEXT_EXPORT_SQL =
+            "SELECT cs.klass_id, k.name, cs.id, cs.session_date, cs.session_time, " +
+                    "a.student_id, u.name, u.email, a.status, a.recorded_at " +
+                    "FROM attendance a " +
+                    "JOIN class_session cs ON cs.id = a.session_id " +
+                    "JOIN klass k ON k.id = cs.klass_id " +
+                    "JOIN user u ON u.id = a.student_id ";
+    private static final String[] TEXT_COLUMNS = {
+            "class_id", "class_name", "session_id", "session_date", "session_time",
+            "student_id", "student_name", "student_email", "status", "recorded_at"
+    };
+
+    private static final int ROW_WINDOW = 200;
+    private static final int CLEAR_EVERY = 500;
+    private static final DateTimeFormatter SESSION_HEADER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final AttendanceStatus[] STATUSES = AttendanceStatus.values();
+
     private final AttendanceRepository attendanceRepository;
     private final KlassRepository klassRepository;
+    private final ClassSessionRepository classSessionRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+    private final JdbcTemplate jdbcTemplate;
+    private final int textFetchSize;
+
+    public AttendanceExportService(AttendanceRepository attendanceRepository,
+                                   KlassRepository klassRepository,
+                                   ClassSessionRepository classSessionRepository,
+                                   EntityManager entityManager,
+                                   PlatformTransactionManager transactionManager,
+                                   JdbcTemplate jdbcTemplate,
+                                   @Value("${export.text.fetch-size:1000}") int textFetchSize) {
+        this.attendanceRepository = attendanceRepository;
+        this.klassRepository = klassRepository;
+        this.classSessionRepository = classSessionRepository;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.textFetchSize = textFetchSize;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
 
-    public ByteArrayInputStream exportAttendanceSheet(Long classId) throws IOException {
-        Klass klass = klassRepository.findById(classId)
+    public Klass requireClass(Long classId) {
+        return klassRepository.findById(classId)
                 .orElseThrow(() -> new RuntimeException("Class not found"));
+    }
+
+    /**
+     * Checks the class exists up front, so a missing class is still a normal error response, and
+     * returns a body that writes the sheet once the response is committed.
+     */
+    public StreamingResponseBody attendanceSheet(Long classId, Layout layout) {
+        Klass klass = requireClass(classId);
+        return out -> writeAttendanceSheet(klass, layout, out);
+    }
+
+    public void writeAttendanceSheet(Klass klass, Layout layout, OutputStream out) throws IOException {
+        writeWorkbook(List.of(klass), layout, out);
+    }
+
+    /**
+     * Writes one workbook with a sheet per class; a single class keeps the plain "Attendance" sheet name.
+     */
+    public void writeWorkbook(List<Klass> classes, Layout layout, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            for (Klass klass : classes) {
+                Sheet sheet = workbook.createSheet(classes.size() == 1
+                        ? "Attendance"
+                        : WorkbookUtil.createSafeSheetName(klass.getId() + " " + klass.getName()));
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    if (layout == Layout.PIVOT) {
+                        writePivot(sheet, klass);
+                    } else {
+                        writeFlat(sheet, klass.getId());
+                    }
+                });
+            }
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    public StreamingResponseBody attendanceText(Long classId, TextFormat format) {
+        requireClass(classId);
+        return out -> writeText(classId, format, out);
+    }
+
+    /**
+     * Every attendance row of every class, for the nightly institution-wide dump.
+     */
+    public StreamingResponseBody institutionText(TextFormat format) {
+        return out -> writeText(null, format, out);
+    }
+
+    /**
+     * Reads a forward-only JDBC cursor, no entities, and encodes each row into one reused char buffer
+     * that is flushed to the response whenever it fills up. Unlike the workbook, the rows go out while
+     * the cursor is open, so the read-only transaction lasts as long as the download.
+     */
+    public void writeText(Long classId, TextFormat format, OutputStream out) throws IOException {
+        TextSink sink = new TextSink(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == TextFormat.CSV) {
+            for (int i = 0; i < TEXT_COLUMNS.length; i++) {
+                if (i > 0) {
+                    sink.append(',');
+                }
+                sink.append(TEXT_COLUMNS[i]);
+            }
+            sink.append('\n');
+        }
+
+        String sql = TEXT_EXPORT_SQL + (classId == null ? "" : "WHERE cs.klass_id = ? ")
+                + "ORDER BY cs.klass_id, cs.starts_at, cs.id, u.name";
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(textFetchSize);
+                if (classId != null) {
+                    statement.setLong(1, classId);
+                }
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    if (format == TextFormat.CSV) {
+                        writeCsvRow(sink, rs);
+                    } else {
+                        writeJsonRow(sink, rs);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        sink.flush();
+    }
+
+    private static void writeCsvRow(TextSink sink, ResultSet rs) throws SQLException, IOException {
+        for (int i = 0; i < TEXT_COLUMNS.length; i++) {
+            if (i > 0) {
+                sink.append(',');
+            }
+            String value = rs.getString(i + 1);
+            if (value != null) {
+                sink.appendCsv(value);
+            }
+        }
+        sink.append('\n');
+    }
 
-        List<Attendance> attendanceList = attendanceRepository.findBySession_Klass_Id(klass.getId());
+    private static void writeJsonRow(TextSink sink, ResultSet rs) throws SQLException, IOException {
+        sink.append('{');
+        for (int i = 0; i < TEXT_COLUMNS.length; i++) {
+            if (i > 0) {
+                sink.append(',');
+            }
+            sink.append('"').append(TEXT_COLUMNS[i]).append("\":");
+            Object value = rs.getObject(i + 1);
+            if (value == null) {
+                sink.append("null");
+            } else if (value instanceof Number) {
+                sink.append(value.toString());
+            } else {
+                sink.append('"').appendJson(rs.getString(i + 1)).append('"');
+            }
+        }
+        sink.append("}\n");
+    }
+
+    /**
+     * Escapes straight into a fixed char buffer, so a row costs no intermediate strings.
+     */
+    private static final class TextSink {
+        private final Writer writer;
+        private final char[] buffer = new char[16 * 1024];
+        private int position;
 
-        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            Sheet sheet = workbook.createSheet("Attendance");
+        TextSink(Writer writer) {
+            this.writer = writer;
+        }
 
-            Row header = sheet.createRow(0);
-            header.createCell(0).setCellValue("Student Name");
-            header.createCell(1).setCellValue("Email");
-            header.createCell(2).setCellValue("Status");
-            header.createCell(3).setCellValue("Date");
+        TextSink append(char c) throws IOException {
+            if (position == buffer.length) {
+                drain();
+            }
+            buffer[position++] = c;
+            return this;
+        }
+
+        TextSink append(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                append(value.charAt(i));
+            }
+            return this;
+        }
+
+        TextSink appendCsv(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                return append(value);
+            }
+            append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    append('"');
+                }
+                append(c);
+            }
+            return append('"');
+        }
+
+        TextSink appendJson(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    append('\\').append(c);
+                } else if (c < 0x20) {
+                    append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                } else {
+                    append(c);
+                }
+            }
+            return this;
+        }
+
+        void flush() throws IOException {
+            drain();
+            writer.flush();
+        }
 
+        private void drain() throws IOException {
+            writer.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private void writeFlat(Sheet sheet, Long classId) {
+        Row header = sheet.createRow(0);
+        header.createCell(0).setCellValue("Student Name");
+        header.createCell(1).setCellValue("Email");
+        header.createCell(2).setCellValue("Status");
+        header.createCell(3).setCellValue("Date");
+
+        try (Stream<Attendance> rows = attendanceRepository.streamByClassId(classId)) {
             int rowNum = 1;
-            for (Attendance att : attendanceList) {
+            Iterator<Attendance> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Attendance att = iterator.next();
                 Row row = sheet.createRow(rowNum++);
                 row.createCell(0).setCellValue(att.getStudent().getName());
                 row.createCell(1).setCellValue(att.getStudent().getEmail());
                 row.createCell(2).setCellValue(att.getStatus().name());
                 row.createCell(3).setCellValue(att.getRecordedAt().toString());
+
+                if (rowNum % CLEAR_EVERY == 0) {
+                    entityManager.clear();
+                }
             }
+        }
+    }
 
-            workbook.write(out);
-            return new ByteArrayInputStream(out.toByteArray());
+    /**
+     * Single pass over the roster cursor: statuses of the current student are collected into a
+     * byte per session ordinal (0 = nothing recorded) and the row is written as soon as the next
+     * student starts.
+     */
+    private void writePivot(Sheet sheet, Klass klass) {
+        List<ClassSession> sessions = classSessionRepository.findByKlassIdOrderByStartsAtAscIdAsc(klass.getId());
+        Map<Long, Integer> ordinals = new HashMap<>(sessions.size() * 2);
+        Row header = sheet.createRow(0);
+        header.createCell(0).setCellValue("Student Name");
+        header.createCell(1).setCellValue("Email");
+        for (int i = 0; i < sessions.size(); i++) {
+            ClassSession session = sessions.get(i);
+            ordinals.put(session.getId(), i);
+            String label = session.getStartsAt().format(SESSION_HEADER);
+            header.createCell(2 + i).setCellValue(session.isCanceled() ? label + " (canceled)" : label);
+        }
+        int totalsColumn = 2 + sessions.size();
+        header.createCell(totalsColumn).setCellValue("Present");
+        header.createCell(totalsColumn + 1).setCellValue("Absent");
+        header.createCell(totalsColumn + 2).setCellValue("Excused");
+        header.createCell(totalsColumn + 3).setCellValue("Pending");
+        header.createCell(totalsColumn + 4).setCellValue("Absence Limit Reached");
+
+        byte[] statuses = new byte[sessions.size()];
+        int[] totals = new int[STATUSES.length];
+        int maxAbsences = klass.getMaxAbsencesAllowed();
+
+        try (Stream<StudentSessionStatus> rows = attendanceRepository.streamRosterStatusesByClassId(klass.getId())) {
+            int rowNum = 1;
+            Long currentStudent = null;
+            String name = null;
+            String email = null;
+
+            Iterator<StudentSessionStatus> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                StudentSessionStatus row = iterator.next();
+                if (!row.getStudentId().equals(currentStudent)) {
+                    if (currentStudent != null) {
+                        writePivotRow(sheet.createRow(rowNum++), name, email, statuses, totals, totalsColumn, maxAbsences);
+                        Arrays.fill(statuses, (byte) 0);
+                        Arrays.fill(totals, 0);
+                    }
+                    currentStudent = row.getStudentId();
+                    name = row.getStudentName();
+                    email = row.getStudentEmail();
+                }
+
+                Integer ordinal = row.getSessionId() == null ? null : ordinals.get(row.getSessionId());
+                if (ordinal != null && row.getStatus() != null) {
+                    statuses[ordinal] = (byte) (row.getStatus().ordinal() + 1);
+                    totals[row.getStatus().ordinal()]++;
+                }
+            }
+            if (currentStudent != null) {
+                writePivotRow(sheet.createRow(rowNum), name, email, statuses, totals, totalsColumn, maxAbsences);
+            }
+        }
+    }
+
+    private static void writePivotRow(Row row, String name, String email, byte[] statuses, int[] totals,
+                                      int totalsColumn, int maxAbsences) {
+        row.createCell(0).setCellValue(name);
+        row.createCell(1).setCellValue(email);
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] != 0) {
+                row.createCell(2 + i).setCellValue(STATUSES[statuses[i] - 1].name());
+            }
         }
+        int absent = totals[AttendanceStatus.ABSENT.ordinal()];
+        row.createCell(totalsColumn).setCellValue(totals[AttendanceStatus.PRESENT.ordinal()]);
+        row.createCell(totalsColumn + 1).setCellValue(absent);
+        row.createCell(totalsColumn + 2).setCellValue(totals[AttendanceStatus.EXCUSED.ordinal()]);
+        row.createCell(totalsColumn + 3).setCellValue(totals[AttendanceStatus.PENDING.ordinal()]);
+        row.createCell(totalsColumn + 4).setCellValue(absent >= maxAbsences ? "YES" : "NO");
     }
 }
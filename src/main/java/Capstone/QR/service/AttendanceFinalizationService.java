@@ -1,60 +1,147 @@
 package Capstone.QR.service;
 
-import Capstone.QR.model.Attendance;
-import Capstone.QR.model.AttendanceStatus;
+import Capstone.QR.dto.Response.FinalizationStatusResponse;
 import Capstone.QR.model.ClassSession;
+import Capstone.QR.model.FinalizationState;
+import Capstone.QR.model.FinalizationWatermark;
+import Capstone.QR.repository.AttendanceCounterRepository;
 import Capstone.QR.repository.AttendanceRepository;
 import Capstone.QR.repository.AttendanceRequestRepository;
 import Capstone.QR.repository.ClassSessionRepository;
-import Capstone.QR.repository.KlassStudentRepository;
-import jakarta.transaction.Transactional;
-import lombok.RequiredArgsConstructor;
-import org.springframework.scheduling.annotation.Scheduled;
+import Capstone.QR.repository.FinalizationWatermarkRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
+/**
+ * Finalizes ended sessions and tracks how far finalization has got. A session is claimed
+ * (OPEN -> FINALIZING) in its own short transaction, then finalized and marked FINALIZED in a
+ * second one; a claim left behind by a crashed worker is taken over after
+ * {@code attendance.finalization.claim-timeout-minutes}. The watermark records the end time up to
+ * which every non-canceled session is finalized, so startup and status queries only look past it.
+ */
 @Service
-@RequiredArgsConstructor
 public class AttendanceFinalizationService {
 
-    private final ClassSessionRepository classSessionRepository;
-    private final KlassStudentRepository klassStudentRepository;
     private final AttendanceRepository attendanceRepository;
     private final AttendanceRequestRepository attendanceRequestRepository;
+    private final AttendanceCounterRepository attendanceCounterRepository;
+    private final ClassSessionRepository classSessionRepository;
+    private final FinalizationWatermarkRepository finalizationWatermarkRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long claimTimeoutMinutes;
+    private final long catchUpHours;
 
-    @Scheduled(fixedRate = 5 * 60 * 1000)
-    @Transactional
-    public void updatePendingToAbsentIfNoRequest() {
+    public record FinalizationResult(int absentInserted, int pendingClosed) {
+    }
+
+    public AttendanceFinalizationService(AttendanceRepository attendanceRepository,
+                                         AttendanceRequestRepository attendanceRequestRepository,
+                                         AttendanceCounterRepository attendanceCounterRepository,
+                                         ClassSessionRepository classSessionRepository,
+                                         FinalizationWatermarkRepository finalizationWatermarkRepository,
+                                         TransactionTemplate transactionTemplate,
+                                         @Value("${attendance.finalization.claim-timeout-minutes:10}") long claimTimeoutMinutes,
+                                         @Value("${attendance.finalization.catch-up-hours:24}") long catchUpHours) {
+        this.attendanceRepository = attendanceRepository;
+        this.attendanceRequestRepository = attendanceRequestRepository;
+        this.attendanceCounterRepository = attendanceCounterRepository;
+        this.classSessionRepository = classSessionRepository;
+        this.finalizationWatermarkRepository = finalizationWatermarkRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.claimTimeoutMinutes = claimTimeoutMinutes;
+        this.catchUpHours = catchUpHours;
+    }
+
+    /**
+     * Marks approved students without a row ABSENT and turns PENDING rows without an attendance
+     * request into ABSENT, one statement each, with the matching counter updates run just before.
+     * The session's attendance and request rows are locked first, so a scan or request committed in
+     * between cannot make a counter update and its row update disagree. Returns empty when the
+     * session is already finalized or being finalized elsewhere.
+     */
+    public Optional<FinalizationResult> finalizeSession(ClassSession session) {
         LocalDateTime now = LocalDateTime.now();
+        Long sessionId = session.getId();
+
+        Integer claimed = transactionTemplate.execute(status ->
+                classSessionRepository.claimForFinalization(sessionId, now, now.minusMinutes(claimTimeoutMinutes)));
+        if (claimed == null || claimed == 0) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.ofNullable(transactionTemplate.execute(status -> {
+                Long classId = session.getKlass().getId();
+                attendanceRepository.lockBySessionId(sessionId);
+                attendanceRequestRepository.lockBySessionId(sessionId);
+                attendanceCounterRepository.addAbsentForUnrecorded(sessionId, classId);
+                int absentInserted = attendanceRepository.insertAbsentForUnrecorded(sessionId, classId, now);
+                attendanceCounterRepository.movePendingToAbsentWithoutRequest(sessionId, classId);
+                int pendingClosed = attendanceRepository.markPendingAbsentWithoutRequest(sessionId, now);
+                classSessionRepository.markFinalized(sessionId);
+                return new FinalizationResult(absentInserted, pendingClosed);
+            }));
+        } catch (RuntimeException e) {
+            classSessionRepository.releaseFinalizationClaim(sessionId);
+            throw e;
+        }
+    }
 
-        List<ClassSession> endedSessions = classSessionRepository.findAll().stream()
-                .filter(session -> {
-                    LocalDateTime sessionEnd = session.getSessionDate().atTime(session.getSessionTime())
-                            .plusMinutes(session.getKlass().getDurationMinutes());
-                    return sessionEnd.isBefore(now);
-                })
-                .toList();
+    public LocalDateTime getWatermark() {
+        return finalizationWatermarkRepository.findById(FinalizationWatermark.SESSIONS)
+                .map(FinalizationWatermark::getFinalizedThrough)
+                .orElseGet(() -> LocalDateTime.now().minusHours(catchUpHours));
+    }
 
-        for (ClassSession session : endedSessions) {
-            Long sessionId = session.getId();
+    /**
+     * Non-canceled, unfinalized sessions that ended after the watermark and are already due.
+     */
+    public List<ClassSession> findUnfinalizedEndedSinceWatermark() {
+        return classSessionRepository.findUnfinalizedEndedBetween(getWatermark(), LocalDateTime.now());
+    }
 
-            List<Attendance> pendingAttendances = attendanceRepository
-                    .findBySession_IdAndStatus(sessionId, AttendanceStatus.PENDING);
+    /**
+     * Non-canceled, unfinalized sessions ending after the watermark, ordered by end time.
+     */
+    public List<ClassSession> findUnfinalizedAfterWatermark() {
+        return classSessionRepository.findUnfinalizedEndingAfter(getWatermark());
+    }
 
-            for (Attendance attendance : pendingAttendances) {
-                Long studentId = attendance.getStudent().getId();
+    /**
+     * Moves the watermark up to just before the earliest ended session that is still unfinalized,
+     * or to now when there is none.
+     */
+    public LocalDateTime advanceWatermark() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime current = getWatermark();
 
-                boolean hasRequest = attendanceRequestRepository
-                        .existsBySession_IdAndStudent_Id(sessionId, studentId);
+        LocalDateTime next = classSessionRepository.findUnfinalizedEndedBetween(current, now).stream()
+                .findFirst()
+                .map(session -> session.getEndsAt().minusSeconds(1))
+                .orElse(now);
 
-                if (!hasRequest) {
-                    attendance.setStatus(AttendanceStatus.ABSENT);
-                    attendance.setRecordedAt(now);
-                    attendanceRepository.save(attendance);
-                }
-            }
+        if (next.isAfter(current)) {
+            finalizationWatermarkRepository.save(new FinalizationWatermark(FinalizationWatermark.SESSIONS, next, now));
+            return next;
         }
+        return current;
+    }
+
+    public FinalizationStatusResponse getStatus(int scheduledSessions) {
+        LocalDateTime watermark = getWatermark();
+        List<ClassSession> backlog = classSessionRepository.findUnfinalizedEndedBetween(watermark, LocalDateTime.now());
+
+        return new FinalizationStatusResponse(
+                watermark,
+                backlog.size(),
+                backlog.isEmpty() ? null : backlog.get(0).getEndsAt(),
+                (int) backlog.stream().filter(s -> s.getFinalizationState() == FinalizationState.FINALIZING).count(),
+                scheduledSessions
+        );
     }
 }
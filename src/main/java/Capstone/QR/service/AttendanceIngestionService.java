@@ -0,0 +1,283 @@
+package Capstone.QR.service;
+
+import Capstone.QR.dto.Response.ScanIngestionStatsResponse;
+import Capstone.QR.model.AttendanceStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Group-commits validated in-range scans. Scans are queued and a single writer thread drains the
+ * queue every few milliseconds, resolves every scan of a batch with one read per session and
+ * writes the batch with JDBC batch statements in one transaction. Callers block until their batch
+ * is durable. When the queue is full or the writer thread has died the scan is written
+ * synchronously on the caller's thread, and a caller never waits longer than the result timeout.
+ * Scans of the same student within one batch collapse into a single upsert. Rows are locked and
+ * written in (session, student) order so concurrent batches cannot deadlock each other, and a batch
+ * that fails is retried one scan at a time so one bad scan does not fail the others.
+ */
+@Slf4j
+@Service
+public class AttendanceIngestionService {
+
+    public enum Outcome {
+        MARKED,
+        ALREADY_MARKED
+    }
+
+    /**
+     * Marks a scan present in one statement. The row is only changed while it is still PENDING, so a
+     * concurrent teacher edit or finalization that already settled it wins.
+     */
+    private static final String UPSERT_PRESENT =
+            "INSERT INTO attendance (session_id, student_id, status, recorded_at) " +
+                    "VALUES (:sessionId, :studentId, 'PRESENT', :recordedAt) " +
+                    "ON DUPLICATE KEY UPDATE " +
+                    "recorded_at = CASE WHEN status = 'PENDING' THEN VALUES(recorded_at) ELSE recorded_at END, " +
+                    "status = CASE WHEN status = 'PENDING' THEN 'PRESENT' ELSE status END";
+
+    private record PendingScan(Long sessionId, Long studentId, LocalDateTime recordedAt, CompletableFuture<Outcome> result) {
+    }
+
+    private static final Comparator<PendingScan> LOCK_ORDER =
+            Comparator.comparing(PendingScan::sessionId).thenComparing(PendingScan::studentId);
+
+    private record Written(Outcome outcome, AttendanceStatus previous) {
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SessionLiveFeed sessionLiveFeed;
+    private final AttendanceCounterService attendanceCounterService;
+    private final BlockingQueue<PendingScan> queue;
+    private final int queueCapacity;
+    private final int maxBatchSize;
+    private final long lingerMillis;
+    private final long resultTimeoutMillis;
+
+    private final LongAdder batchesCommitted = new LongAdder();
+    private final LongAdder scansCommitted = new LongAdder();
+    private final LongAdder synchronousWrites = new LongAdder();
+    private final LongAdder totalCommitMicros = new LongAdder();
+    private final AtomicLong lastBatchSize = new AtomicLong();
+    private final AtomicLong maxObservedBatchSize = new AtomicLong();
+    private final AtomicLong lastCommitMicros = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public AttendanceIngestionService(NamedParameterJdbcTemplate jdbcTemplate,
+                                      TransactionTemplate transactionTemplate,
+                                      SessionLiveFeed sessionLiveFeed,
+                                      AttendanceCounterService attendanceCounterService,
+                                      @Value("${attendance.ingest.queue-capacity:4096}") int queueCapacity,
+                                      @Value("${attendance.ingest.max-batch-size:256}") int maxBatchSize,
+                                      @Value("${attendance.ingest.linger-millis:5}") long lingerMillis,
+                                      @Value("${attendance.ingest.result-timeout-millis:5000}") long resultTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.sessionLiveFeed = sessionLiveFeed;
+        this.attendanceCounterService = attendanceCounterService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.queueCapacity = queueCapacity;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMillis = lingerMillis;
+        this.resultTimeoutMillis = resultTimeoutMillis;
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        writer = new Thread(this::drainLoop, "attendance-ingest");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        List<PendingScan> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        if (!leftovers.isEmpty()) {
+            commit(leftovers);
+        }
+    }
+
+    /**
+     * Marks the student present for the session and returns once the write is committed.
+     */
+    public Outcome markPresent(Long sessionId, Long studentId) {
+        PendingScan scan = new PendingScan(sessionId, studentId, LocalDateTime.now(), new CompletableFuture<>());
+
+        if (!running || !writer.isAlive() || !queue.offer(scan)) {
+            synchronousWrites.increment();
+            commit(List.of(scan));
+        }
+        try {
+            return scan.result().get(resultTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Still queued behind a stalled or dead writer: take the scan back and write it here
+            if (queue.remove(scan)) {
+                synchronousWrites.increment();
+                commit(List.of(scan));
+                return scan.result().join();
+            }
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Attendance could not be recorded, try again");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Failed to record attendance", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Attendance could not be recorded, try again");
+        }
+    }
+
+    public ScanIngestionStatsResponse getStats() {
+        long batches = batchesCommitted.sum();
+        return new ScanIngestionStatsResponse(
+                queue.size(),
+                queueCapacity,
+                batches,
+                scansCommitted.sum(),
+                lastBatchSize.get(),
+                maxObservedBatchSize.get(),
+                lastCommitMicros.get() / 1000.0,
+                batches == 0 ? 0 : totalCommitMicros.sum() / 1000.0 / batches,
+                synchronousWrites.sum()
+        );
+    }
+
+    private void drainLoop() {
+        List<PendingScan> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                PendingScan first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                if (lingerMillis > 0 && queue.size() < maxBatchSize - 1) {
+                    Thread.sleep(lingerMillis);
+                }
+                queue.drainTo(batch, maxBatchSize - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable e) {
+                // commit completes every scan itself; this only guards the loop so the writer never dies
+                log.error("Attendance writer failed on a batch of {} scans", batch.size(), e);
+                batch.forEach(scan -> scan.result().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingScan> batch) {
+        long started = System.nanoTime();
+        try {
+            Map<PendingScan, Written> outcomes = transactionTemplate.execute(status -> write(batch));
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started);
+
+            batchesCommitted.increment();
+            scansCommitted.add(batch.size());
+            totalCommitMicros.add(micros);
+            lastCommitMicros.set(micros);
+            lastBatchSize.set(batch.size());
+            maxObservedBatchSize.accumulateAndGet(batch.size(), Math::max);
+
+            outcomes.forEach((scan, written) -> {
+                if (written.outcome() == Outcome.MARKED) {
+                    sessionLiveFeed.statusChanged(scan.sessionId(), scan.studentId(), written.previous(), AttendanceStatus.PRESENT);
+                }
+                scan.result().complete(written.outcome());
+            });
+        } catch (Throwable e) {
+            if (batch.size() > 1) {
+                log.warn("Failed to commit attendance batch of {} scans, retrying them one by one", batch.size(), e);
+                batch.forEach(scan -> commit(List.of(scan)));
+                return;
+            }
+            log.error("Failed to commit attendance scan of student {} in session {}", batch.get(0).studentId(), batch.get(0).sessionId(), e);
+            batch.forEach(scan -> scan.result().completeExceptionally(e));
+        }
+    }
+
+    private Map<PendingScan, Written> write(List<PendingScan> arrived) {
+        // Stable, so repeated scans of one student keep their arrival order
+        List<PendingScan> batch = arrived.stream().sorted(LOCK_ORDER).toList();
+        Map<PendingScan, Written> outcomes = new IdentityHashMap<>();
+        Map<Long, Map<Long, String>> statusesBySession = new HashMap<>();
+
+        Map<Long, Set<Long>> studentIdsBySession = new TreeMap<>();
+        for (PendingScan scan : batch) {
+            studentIdsBySession.computeIfAbsent(scan.sessionId(), id -> new TreeSet<>()).add(scan.studentId());
+        }
+        studentIdsBySession.forEach((sessionId, studentIds) -> {
+            Map<Long, String> statuses = new HashMap<>();
+            jdbcTemplate.query(
+                    "SELECT student_id, status FROM attendance WHERE session_id = :sessionId AND student_id IN (:studentIds) FOR UPDATE",
+                    new MapSqlParameterSource("sessionId", sessionId).addValue("studentIds", studentIds),
+                    rs -> {
+                        statuses.put(rs.getLong("student_id"), rs.getString("status"));
+                    });
+            statusesBySession.put(sessionId, statuses);
+        });
+
+        List<MapSqlParameterSource> marked = new ArrayList<>();
+        List<AttendanceCounterService.Transition> transitions = new ArrayList<>();
+        for (PendingScan scan : batch) {
+            Map<Long, String> statuses = statusesBySession.get(scan.sessionId());
+            String current = statuses.get(scan.studentId());
+
+            if (current != null && !"PENDING".equals(current)) {
+                outcomes.put(scan, new Written(Outcome.ALREADY_MARKED, null));
+                continue;
+            }
+
+            marked.add(new MapSqlParameterSource()
+                    .addValue("sessionId", scan.sessionId())
+                    .addValue("studentId", scan.studentId())
+                    .addValue("recordedAt", Timestamp.valueOf(scan.recordedAt())));
+            statuses.put(scan.studentId(), "PRESENT");
+            outcomes.put(scan, new Written(Outcome.MARKED, current == null ? null : AttendanceStatus.PENDING));
+            transitions.add(new AttendanceCounterService.Transition(scan.sessionId(), scan.studentId(),
+                    current == null ? null : AttendanceStatus.PENDING, AttendanceStatus.PRESENT));
+        }
+
+        if (!marked.isEmpty()) {
+            MapSqlParameterSource[] params = marked.toArray(MapSqlParameterSource[]::new);
+            jdbcTemplate.batchUpdate(UPSERT_PRESENT, params);
+            jdbcTemplate.batchUpdate(
+                    "DELETE FROM attendance_request " +
+                            "WHERE session_id = :sessionId AND student_id = :studentId AND status = 'PENDING'",
+                    params);
+            attendanceCounterService.transitions(transitions);
+        }
+        return outcomes;
+    }
+}
@@ -1,67 +1,228 @@
 package Capstone.QR.service;
 
-import Capstone.QR.model.*;
-import Capstone.QR.repository.AttendanceRepository;
+import Capstone.QR.model.ClassSession;
+import Capstone.QR.model.FinalizationState;
 import Capstone.QR.repository.ClassSessionRepository;
-import Capstone.QR.repository.KlassStudentRepository;
-import lombok.RequiredArgsConstructor;
+import Capstone.QR.utils.GenerateSessions;
+import Capstone.QR.utils.HierarchicalTimerWheel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Finalizes each non-canceled session once, when it ends. Session end times live in a timer wheel
+ * that is filled at startup with the unfinalized sessions past the finalization watermark
+ * (sessions that ended while the app was down fire on the first tick) and kept current by class
+ * creation and session updates.
+ * <p>
+ * With several instances, sessions are split into {@code attendance.finalization.partitions}
+ * partitions by class id modulo, each guarded by a lease. An instance only finalizes sessions of
+ * partitions it holds and leaves the others to their owners. A session only sits in the wheel of
+ * the instance that created or loaded it, so each owner also sweeps the ended, unfinalized
+ * sessions since the watermark every {@code attendance.finalization.sweep-interval-millis} and
+ * finalizes those of its partitions; a partition whose owner died is swept by the instance that
+ * takes its lease over. The tick only picks the sessions that are due; the work runs on
+ * {@link FinalizationExecutor}, and failed or rejected sessions are retried one lease TTL later.
+ * Claims keep a session that is both due locally and swept from being finalized twice.
+ * <p>
+ * Session starts live in a second wheel: when a session goes live, {@link SessionStartService}
+ * creates its PENDING rows. That step is idempotent and runs on whichever instance knows the
+ * session, without partitioning.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
-
 public class AttendanceScheduler {
 
     private final ClassSessionRepository classSessionRepository;
-    private final AttendanceRepository attendanceRepository;
-    private final KlassStudentRepository klassStudentRepository;
-
-    @Scheduled(fixedRate = 300_000)
-    public void markAbsentForExpiredSessions() {
-        LocalDateTime now = LocalDateTime.now();
-
-        List<ClassSession> expiredSessions = classSessionRepository.findAll().stream()
-                .filter(session -> !session.isCanceled())
-                .filter(session -> {
-                    LocalDateTime sessionStart = session.getSessionDate().atTime(session.getSessionTime());
-                    LocalDateTime sessionEnd = sessionStart.plusMinutes(session.getKlass().getDurationMinutes());
-                    return LocalDateTime.now().isAfter(sessionEnd);
-                })
+    private final AttendanceFinalizationService attendanceFinalizationService;
+    private final JobLeaseService jobLeaseService;
+    private final FinalizationExecutor finalizationExecutor;
+    private final SessionStartService sessionStartService;
+    private final HierarchicalTimerWheel<Long> sessionEnds;
+    private final HierarchicalTimerWheel<Long> sessionStarts;
+    private final int partitions;
+    private final int maxPartitionsPerInstance;
+    private final Duration leaseTtl;
+
+    public AttendanceScheduler(ClassSessionRepository classSessionRepository,
+                               AttendanceFinalizationService attendanceFinalizationService,
+                               JobLeaseService jobLeaseService,
+                               FinalizationExecutor finalizationExecutor,
+                               SessionStartService sessionStartService,
+                               @Value("${attendance.finalization.tick-millis:1000}") long tickMillis,
+                               @Value("${attendance.finalization.partitions:1}") int partitions,
+                               @Value("${attendance.finalization.max-partitions-per-instance:0}") int maxPartitionsPerInstance,
+                               @Value("${attendance.finalization.lease-ttl-seconds:60}") long leaseTtlSeconds) {
+        this.classSessionRepository = classSessionRepository;
+        this.attendanceFinalizationService = attendanceFinalizationService;
+        this.jobLeaseService = jobLeaseService;
+        this.finalizationExecutor = finalizationExecutor;
+        this.sessionStartService = sessionStartService;
+        this.partitions = partitions;
+        this.maxPartitionsPerInstance = maxPartitionsPerInstance;
+        this.leaseTtl = Duration.ofSeconds(leaseTtlSeconds);
+        this.sessionEnds = new HierarchicalTimerWheel<>(tickMillis, 64, 4, System.currentTimeMillis());
+        this.sessionStarts = new HierarchicalTimerWheel<>(tickMillis, 64, 4, System.currentTimeMillis());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSessionEnds() {
+        List<ClassSession> missingTimes = classSessionRepository.findWithoutStartsOrEnds();
+        if (!missingTimes.isEmpty()) {
+            missingTimes.forEach(session -> GenerateSessions.schedule(session, session.getSessionDate(),
+                    session.getSessionTime(), session.getKlass().getDurationMinutes()));
+            classSessionRepository.saveAll(missingTimes);
+            log.info("Backfilled start and end times for {} sessions", missingTimes.size());
+        }
+
+        List<ClassSession> sessions = attendanceFinalizationService.findUnfinalizedAfterWatermark();
+        sessions.forEach(this::schedule);
+        log.info("Scheduled finalization for {} sessions after watermark {}",
+                sessions.size(), attendanceFinalizationService.getWatermark());
+    }
+
+    public void schedule(ClassSession session) {
+        if (session.isCanceled()) {
+            sessionEnds.cancel(session.getId());
+            sessionStarts.cancel(session.getId());
+            return;
+        }
+        sessionEnds.schedule(session.getId(), session.getEndsAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        // Live sessions fire on the next tick; ended ones are left to finalization
+        if (session.getEndsAt().isAfter(LocalDateTime.now())) {
+            sessionStarts.schedule(session.getId(), session.getStartsAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        } else {
+            sessionStarts.cancel(session.getId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${attendance.finalization.tick-millis:1000}")
+    public void openStartedSessions() {
+        List<Long> due = sessionStarts.advanceTo(System.currentTimeMillis());
+        for (Long sessionId : due) {
+            try {
+                classSessionRepository.findById(sessionId)
+                        .filter(this::isLive)
+                        .ifPresent(session -> {
+                            int created = sessionStartService.openSession(session);
+                            log.debug("Opened session {}: {} pending rows created", sessionId, created);
+                        });
+            } catch (RuntimeException e) {
+                log.error("Failed to open session {}", sessionId, e);
+                sessionStarts.schedule(sessionId, System.currentTimeMillis() + leaseTtl.toMillis());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${attendance.finalization.tick-millis:1000}")
+    public void finalizeEndedSessions() {
+        List<Long> due = sessionEnds.advanceTo(System.currentTimeMillis());
+        if (due.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> ownedPartitions = jobLeaseService.ownedPartitions("finalization-partition", partitions,
+                maxPartitionsPerInstance, leaseTtl);
+
+        List<ClassSession> ready = new ArrayList<>();
+        for (Long sessionId : due) {
+            try {
+                classSessionRepository.findById(sessionId)
+                        .filter(session -> isReady(session, ownedPartitions))
+                        .ifPresent(ready::add);
+            } catch (RuntimeException e) {
+                log.error("Failed to load session {} for finalization", sessionId, e);
+                retryLater(sessionId);
+            }
+        }
+        submit(ready);
+    }
+
+    @Scheduled(initialDelayString = "${attendance.finalization.sweep-interval-millis:60000}",
+            fixedDelayString = "${attendance.finalization.sweep-interval-millis:60000}")
+    public void sweepEndedSessions() {
+        Set<Integer> ownedPartitions = jobLeaseService.ownedPartitions("finalization-partition", partitions,
+                maxPartitionsPerInstance, leaseTtl);
+        if (ownedPartitions.isEmpty()) {
+            return;
+        }
+        List<ClassSession> ended = attendanceFinalizationService.findUnfinalizedEndedSinceWatermark().stream()
+                .filter(session -> ownedPartitions.contains(partitionOf(session)))
                 .toList();
+        if (!ended.isEmpty()) {
+            log.debug("Sweep found {} ended unfinalized sessions in partitions {}", ended.size(), ownedPartitions);
+            submit(ended);
+        }
+    }
 
+    private void submit(List<ClassSession> ready) {
+        if (ready.isEmpty()) {
+            return;
+        }
 
-        for (ClassSession session : expiredSessions) {
-            List<Long> presentStudentIds = attendanceRepository.findBySession_Id(session.getId()).stream()
-                    .map(attendance -> attendance.getStudent().getId())
-                    .toList();
-
-            List<Student> allApprovedStudents = klassStudentRepository
-                    .findAllByKlassIdAndApprovedTrue(session.getKlass().getId())
-                    .stream()
-                    .map(KlassStudent::getStudent)
-                    .toList();
-
-            for (Student student : allApprovedStudents) {
-                if (!presentStudentIds.contains(student.getId())) {
-                    boolean alreadyMarked = attendanceRepository
-                            .findAllBySession_IdAndStudent_Id(session.getId(), student.getId())
-                            .stream()
-                            .anyMatch(a -> a.getStatus() == AttendanceStatus.ABSENT);
-
-                    if (!alreadyMarked) {
-                        Attendance absentRecord = new Attendance();
-                        absentRecord.setSession(session);
-                        absentRecord.setStudent(student);
-                        absentRecord.setRecordedAt(now);
-                        absentRecord.setStatus(AttendanceStatus.ABSENT);
-                        attendanceRepository.save(absentRecord);
-                    }
-                }
+        FinalizationExecutor.Submission submission = finalizationExecutor.submit(ready);
+        submission.rejected().forEach(session -> retryLater(session.getId()));
+        submission.result().thenAccept(result -> {
+            result.failed().forEach(session -> retryLater(session.getId()));
+            if (result.finalized() > 0) {
+                log.info("Finalized {} sessions: {} absent rows inserted, {} pending rows closed",
+                        result.finalized(), result.absentInserted(), result.pendingClosed());
+                advanceWatermark();
             }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${attendance.finalization.watermark-interval-millis:300000}")
+    public void advanceWatermark() {
+        jobLeaseService.runExclusively("finalization-watermark", Duration.ofMinutes(5), Duration.ZERO,
+                attendanceFinalizationService::advanceWatermark);
+    }
+
+    public int getScheduledCount() {
+        return sessionEnds.size();
+    }
+
+    private boolean isLive(ClassSession session) {
+        if (session.isCanceled() || !session.getEndsAt().isAfter(LocalDateTime.now())) {
+            return false;
         }
+        if (session.getStartsAt().isAfter(LocalDateTime.now())) {
+            schedule(session);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isReady(ClassSession session, Set<Integer> ownedPartitions) {
+        if (session.isCanceled() || session.getFinalizationState() == FinalizationState.FINALIZED) {
+            return false;
+        }
+        if (session.getEndsAt().isAfter(LocalDateTime.now())) {
+            schedule(session);
+            return false;
+        }
+        // The partition's owner finalizes it from its sweep
+        if (!ownedPartitions.contains(partitionOf(session))) {
+            return false;
+        }
+        return true;
+    }
+
+    private int partitionOf(ClassSession session) {
+        return Math.floorMod(session.getKlass().getId(), partitions);
+    }
+
+    private void retryLater(Long sessionId) {
+        sessionEnds.schedule(sessionId, System.currentTimeMillis() + leaseTtl.toMillis());
     }
 }
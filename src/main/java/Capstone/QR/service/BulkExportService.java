@@ -0,0 +1,142 @@
+package Capstone.QR.service;
+
+import Capstone.QR.model.Klass;
+import Capstone.QR.model.Teacher;
+import Capstone.QR.repository.KlassRepository;
+import Capstone.QR.repository.TeacherRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams a ZIP with one attendance workbook per class. Workbooks are built in parallel on a
+ * bounded pool and written to the archive in class order; the writer keeps at most
+ * {@code export.zip.max-in-flight} workbooks submitted or rendered ahead of the entry it is
+ * writing, so memory is bounded by that window and not by the number of classes.
+ */
+@Slf4j
+@Service
+public class BulkExportService {
+
+    private record Entry(Klass klass, Future<byte[]> workbook) {
+    }
+
+    private final AttendanceExportService attendanceExportService;
+    private final KlassRepository klassRepository;
+    private final TeacherRepository teacherRepository;
+    private final int maxInFlight;
+    private final ThreadPoolExecutor pool;
+
+    public BulkExportService(AttendanceExportService attendanceExportService,
+                             KlassRepository klassRepository,
+                             TeacherRepository teacherRepository,
+                             @Value("${export.zip.parallelism:3}") int parallelism,
+                             @Value("${export.zip.max-in-flight:4}") int maxInFlight) {
+        this.attendanceExportService = attendanceExportService;
+        this.klassRepository = klassRepository;
+        this.teacherRepository = teacherRepository;
+        this.maxInFlight = Math.max(1, maxInFlight);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        // Shared by all downloads; when it is saturated the downloading thread renders the workbook itself
+        this.pool = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * this.maxInFlight),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "attendance-zip-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        pool.shutdownNow();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public StreamingResponseBody teacherArchive(String teacherEmail, AttendanceExportService.Layout layout) {
+        Teacher teacher = teacherRepository.findByEmail(teacherEmail)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Teacher not found"));
+        return archive(klassRepository.findByTeacher(teacher), layout);
+    }
+
+    public StreamingResponseBody institutionArchive(AttendanceExportService.Layout layout) {
+        return archive(klassRepository.findAll(), layout);
+    }
+
+    private StreamingResponseBody archive(List<Klass> classes, AttendanceExportService.Layout layout) {
+        List<Klass> ordered = classes.stream().sorted(Comparator.comparing(Klass::getId)).toList();
+        return out -> writeArchive(ordered, layout, out);
+    }
+
+    private void writeArchive(List<Klass> classes, AttendanceExportService.Layout layout, OutputStream out) throws IOException {
+        long started = System.currentTimeMillis();
+        Deque<Entry> window = new ArrayDeque<>(maxInFlight);
+        ZipOutputStream zip = new ZipOutputStream(out);
+        try {
+            for (Klass klass : classes) {
+                if (window.size() == maxInFlight) {
+                    writeEntry(zip, window.poll());
+                }
+                window.add(new Entry(klass, pool.submit(() -> render(klass, layout))));
+            }
+            while (!window.isEmpty()) {
+                writeEntry(zip, window.poll());
+            }
+            zip.finish();
+            zip.flush();
+            log.info("Streamed attendance archive of {} classes in {} ms", classes.size(), System.currentTimeMillis() - started);
+        } finally {
+            window.forEach(entry -> entry.workbook().cancel(true));
+        }
+    }
+
+    private byte[] render(Klass klass, AttendanceExportService.Layout layout) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        attendanceExportService.writeAttendanceSheet(klass, layout, buffer);
+        return buffer.toByteArray();
+    }
+
+    private static void writeEntry(ZipOutputStream zip, Entry entry) throws IOException {
+        byte[] workbook;
+        try {
+            workbook = entry.workbook().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while building attendance archive");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to export class " + entry.klass().getId(), e.getCause());
+        }
+        // Workbooks are already deflated internally, so store them as they are
+        ZipEntry zipEntry = new ZipEntry("attendance_" + entry.klass().getId() + "_"
+                + entry.klass().getName().replaceAll("[^A-Za-z0-9._-]+", "_") + ".xlsx");
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(workbook.length);
+        zipEntry.setCompressedSize(workbook.length);
+        CRC32 crc = new CRC32();
+        crc.update(workbook);
+        zipEntry.setCrc(crc.getValue());
+        zip.putNextEntry(zipEntry);
+        zip.write(workbook);
+        zip.closeEntry();
+    }
+}
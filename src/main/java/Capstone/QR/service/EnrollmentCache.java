@@ -0,0 +1,82 @@
+package Capstone.QR.service;
+
+import Capstone.QR.dto.Response.EnrollmentCacheStatsResponse;
+import Capstone.QR.repository.KlassStudentRepository;
+import Capstone.QR.utils.LongHashSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Approved student ids per class, loaded lazily into a primitive hash set and kept current by the
+ * join/approve/reject/remove paths. Entries are reloaded after {@code enrollment.cache.ttl-seconds}
+ * so that changes made on another node are picked up.
+ */
+@Service
+public class EnrollmentCache {
+
+    private record Entry(LongHashSet studentIds, long loadedAtMillis) {
+    }
+
+    private final KlassStudentRepository klassStudentRepository;
+    private final long ttlMillis;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    public EnrollmentCache(KlassStudentRepository klassStudentRepository,
+                           @Value("${enrollment.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.klassStudentRepository = klassStudentRepository;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    public boolean isApproved(Long classId, Long studentId) {
+        return approvedStudentIds(classId).contains(studentId);
+    }
+
+    public LongHashSet approvedStudentIds(Long classId) {
+        Entry entry = entries.get(classId);
+        if (entry == null || isExpired(entry)) {
+            // Reloaded under the key's lock so an approval or removal applied meanwhile is not overwritten by a stale read
+            entry = entries.compute(classId, (id, current) -> current == null || isExpired(current)
+                    ? new Entry(LongHashSet.of(klassStudentRepository.findApprovedStudentIdsByClassId(id)), System.currentTimeMillis())
+                    : current);
+        }
+        return entry.studentIds();
+    }
+
+    public void studentApproved(Long classId, Long studentId) {
+        entries.computeIfPresent(classId, (id, entry) -> new Entry(entry.studentIds().with(studentId), entry.loadedAtMillis()));
+    }
+
+    public void studentRemoved(Long classId, Long studentId) {
+        entries.computeIfPresent(classId, (id, entry) -> new Entry(entry.studentIds().without(studentId), entry.loadedAtMillis()));
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.currentTimeMillis() - entry.loadedAtMillis() > ttlMillis;
+    }
+
+    public void evictClass(Long classId) {
+        entries.remove(classId);
+    }
+
+    public EnrollmentCacheStatsResponse getStats() {
+        List<EnrollmentCacheStatsResponse.ClassEntry> classes = entries.entrySet().stream()
+                .map(e -> new EnrollmentCacheStatsResponse.ClassEntry(
+                        e.getKey(),
+                        e.getValue().studentIds().size(),
+                        e.getValue().studentIds().memoryBytes()))
+                .sorted(Comparator.comparingLong(EnrollmentCacheStatsResponse.ClassEntry::getMemoryBytes).reversed())
+                .toList();
+
+        return new EnrollmentCacheStatsResponse(
+                classes.size(),
+                classes.stream().mapToLong(EnrollmentCacheStatsResponse.ClassEntry::getApprovedStudents).sum(),
+                classes.stream().mapToLong(EnrollmentCacheStatsResponse.ClassEntry::getMemoryBytes).sum(),
+                classes
+        );
+    }
+}
@@ -0,0 +1,292 @@
+package Capstone.QR.service;
+
+import Capstone.QR.dto.Response.ExportJobResponse;
+import Capstone.QR.model.Klass;
+import Capstone.QR.repository.AttendanceCounterRepository;
+import Capstone.QR.repository.KlassRepository;
+import Capstone.QR.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Runs attendance exports in the background on a small bounded pool, so a large workbook does not
+ * hold a request thread. Finished files are spooled to disk under a fingerprint of the request and
+ * of the class and counter versions; a later request for unchanged attendance is answered from the
+ * spooled file without regenerating it.
+ */
+@Slf4j
+@Service
+public class ExportJobService {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final String ownerEmail;
+        final List<Long> classIds;
+        final AttendanceExportService.Layout layout;
+        final String fingerprint;
+        final LocalDateTime createdAt = LocalDateTime.now();
+        volatile Status status = Status.QUEUED;
+        volatile LocalDateTime finishedAt;
+        volatile String error;
+
+        Job(String ownerEmail, List<Long> classIds, AttendanceExportService.Layout layout, String fingerprint) {
+            this.ownerEmail = ownerEmail;
+            this.classIds = classIds;
+            this.layout = layout;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private final AttendanceExportService attendanceExportService;
+    private final KlassRepository klassRepository;
+    private final AttendanceCounterRepository attendanceCounterRepository;
+    private final UserRepository userRepository;
+    private final Path spoolDir;
+    private final Duration retention;
+    private final ThreadPoolExecutor pool;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Job> runningByFingerprint = new ConcurrentHashMap<>();
+
+    public ExportJobService(AttendanceExportService attendanceExportService,
+                            KlassRepository klassRepository,
+                            AttendanceCounterRepository attendanceCounterRepository,
+                            UserRepository userRepository,
+                            @Value("${export.jobs.spool-dir:${java.io.tmpdir}/qr-exports}") String spoolDir,
+                            @Value("${export.jobs.retention-minutes:60}") long retentionMinutes,
+                            @Value("${export.jobs.parallelism:2}") int parallelism,
+                            @Value("${export.jobs.queue-capacity:16}") int queueCapacity) throws IOException {
+        this.attendanceExportService = attendanceExportService;
+        this.klassRepository = klassRepository;
+        this.attendanceCounterRepository = attendanceCounterRepository;
+        this.userRepository = userRepository;
+        this.spoolDir = Files.createDirectories(Path.of(spoolDir));
+        this.retention = Duration.ofMinutes(retentionMinutes);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "attendance-export-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        pool.shutdownNow();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Starts an export of the given classes, all of which must belong to the caller. Answers from the
+     * spool when the same export of unchanged attendance is already there, and joins a running job
+     * for the same fingerprint instead of starting a second one.
+     */
+    public ExportJobResponse submit(List<Long> classIds, AttendanceExportService.Layout layout, String ownerEmail) {
+        List<Long> sortedIds = classIds.stream().distinct().sorted().toList();
+        Map<Long, Klass> byId = new HashMap<>();
+        klassRepository.findAllById(sortedIds).forEach(klass -> byId.put(klass.getId(), klass));
+        for (Long classId : sortedIds) {
+            Klass klass = byId.get(classId);
+            if (klass == null) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Class not found");
+            }
+            if (!klass.getTeacher().getEmail().equals(ownerEmail)) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
+            }
+        }
+
+        String fingerprint = fingerprint(sortedIds.stream().map(byId::get).toList(), layout);
+        Job job = new Job(ownerEmail, sortedIds, layout, fingerprint);
+
+        Path cached = fileFor(fingerprint);
+        if (Files.exists(cached)) {
+            touch(cached);
+            job.status = Status.DONE;
+            job.finishedAt = LocalDateTime.now();
+            jobs.put(job.id, job);
+            return toResponse(job);
+        }
+
+        // A class has a single teacher, so a job with the same fingerprint has the same owner
+        Job running = runningByFingerprint.putIfAbsent(fingerprint, job);
+        if (running != null) {
+            return toResponse(running);
+        }
+
+        jobs.put(job.id, job);
+        Job submitted = job;
+        try {
+            pool.execute(() -> run(submitted));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            runningByFingerprint.remove(fingerprint, job);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many exports running, try again later");
+        }
+        return toResponse(job);
+    }
+
+    public ExportJobResponse getJob(String jobId, String ownerEmail) {
+        return toResponse(requireJob(jobId, ownerEmail));
+    }
+
+    /**
+     * The spooled file of a finished job owned by the caller.
+     */
+    public Path getFile(String jobId, String ownerEmail) {
+        Job job = requireJob(jobId, ownerEmail);
+        if (job.status != Status.DONE) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Export is not ready");
+        }
+        Path file = fileFor(job.fingerprint);
+        if (!Files.exists(file)) {
+            throw new ResponseStatusException(HttpStatus.GONE, "Export has expired");
+        }
+        return file;
+    }
+
+    @Scheduled(fixedDelayString = "${export.jobs.cleanup-interval-millis:300000}")
+    public void removeExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        LocalDateTime jobCutoff = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(jobCutoff));
+
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            files.filter(file -> isOlderThan(file, cutoff)).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Failed to remove expired export {}", file, e);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Failed to list export spool {}", spoolDir, e);
+        }
+    }
+
+    private void run(Job job) {
+        job.status = Status.RUNNING;
+        long started = System.currentTimeMillis();
+        Path tmp = spoolDir.resolve(job.id + ".tmp");
+        try {
+            List<Klass> classes = klassRepository.findAllById(job.classIds).stream()
+                    .sorted(Comparator.comparing(Klass::getId))
+                    .toList();
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                attendanceExportService.writeWorkbook(classes, job.layout, out);
+            }
+            Files.move(tmp, fileFor(job.fingerprint), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.status = Status.DONE;
+            log.info("Export {} of classes {} written in {} ms", job.id, job.classIds, System.currentTimeMillis() - started);
+        } catch (IOException | RuntimeException e) {
+            job.status = Status.FAILED;
+            job.error = "Export failed";
+            log.error("Export {} of classes {} failed", job.id, job.classIds, e);
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // removed by the cleanup pass at the latest
+            }
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            runningByFingerprint.remove(job.fingerprint, job);
+        }
+    }
+
+    private Job requireJob(String jobId, String ownerEmail) {
+        Job job = jobs.get(jobId);
+        if (job == null || !job.ownerEmail.equals(ownerEmail)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Export job not found");
+        }
+        return job;
+    }
+
+    /**
+     * Changes whenever anything written to the workbook can have changed: the layout, the class
+     * settings and sessions (content version), any attendance status (counter versions) and the
+     * name or email of any student the workbook lists.
+     */
+    private String fingerprint(List<Klass> classes, AttendanceExportService.Layout layout) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder input = new StringBuilder(layout.name());
+        for (Klass klass : classes) {
+            Object[] counters = attendanceCounterRepository.findVersionSummary(klass.getId()).get(0);
+            input.append('|').append(klass.getId())
+                    .append(':').append(klass.getContentVersion())
+                    .append(':').append(klass.getMaxAbsencesAllowed())
+                    .append(':').append(counters[0])
+                    .append(':').append(counters[1]);
+            for (Object[] profile : userRepository.findRosterProfiles(klass.getId())) {
+                input.append('|').append(profile[0])
+                        .append('\u0000').append(profile[1])
+                        .append('\u0000').append(profile[2]);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest(input.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Path fileFor(String fingerprint) {
+        return spoolDir.resolve(fingerprint + ".xlsx");
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            log.warn("Failed to touch cached export {}", file, e);
+        }
+    }
+
+    private static boolean isOlderThan(Path file, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static ExportJobResponse toResponse(Job job) {
+        return new ExportJobResponse(
+                job.id,
+                job.status.name(),
+                job.classIds,
+                job.layout.name(),
+                job.createdAt,
+                job.finishedAt,
+                job.error
+        );
+    }
+}
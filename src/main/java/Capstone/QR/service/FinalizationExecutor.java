@@ -0,0 +1,181 @@
+package Capstone.QR.service;
+
+import Capstone.QR.dto.Response.FinalizationExecutorStatsResponse;
+import Capstone.QR.model.ClassSession;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs session finalization on its own bounded threads, separate from the scheduler thread and the
+ * web request pool. Sessions are split into lanes by class id and each lane has a single worker
+ * thread with its own bounded queue, so one class is never finalized by two workers at once, even
+ * when a later tick submits to a lane whose previous batch is still running. Each lane finalizes its
+ * sessions one by one, each in its own short transactions. Failed sessions are handed back so the
+ * caller can retry them.
+ */
+@Slf4j
+@Service
+public class FinalizationExecutor {
+
+    public record BatchResult(int finalized, int absentInserted, int pendingClosed, List<ClassSession> failed) {
+    }
+
+    public record Submission(CompletableFuture<BatchResult> result, List<ClassSession> rejected) {
+    }
+
+    private static final class Lane {
+        final ThreadPoolExecutor worker;
+        final LongAdder finalized = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder totalMicros = new LongAdder();
+        final AtomicLong maxMicros = new AtomicLong();
+        final AtomicLong lastRunMicros = new AtomicLong();
+
+        Lane(int index, int queueCapacity) {
+            this.worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "attendance-finalize-" + index);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    private final AttendanceFinalizationService attendanceFinalizationService;
+    private final int parallelism;
+    private final int queueCapacity;
+    private final Lane[] lanes;
+    private final LongAdder rejectedLanes = new LongAdder();
+
+    public FinalizationExecutor(AttendanceFinalizationService attendanceFinalizationService,
+                                @Value("${attendance.finalization.parallelism:4}") int parallelism,
+                                @Value("${attendance.finalization.queue-capacity:64}") int queueCapacity) {
+        this.attendanceFinalizationService = attendanceFinalizationService;
+        this.parallelism = parallelism;
+        this.queueCapacity = queueCapacity;
+        this.lanes = new Lane[parallelism];
+        // queue-capacity is the total across lanes
+        int laneQueueCapacity = Math.max(1, queueCapacity / parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            lanes[i] = new Lane(i, laneQueueCapacity);
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        for (Lane lane : lanes) {
+            lane.worker.shutdown();
+        }
+        for (Lane lane : lanes) {
+            lane.worker.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Finalizes the sessions across the lanes. Sessions of lanes whose queue is full are
+     * returned as rejected so the caller can retry them later.
+     */
+    public Submission submit(List<ClassSession> sessions) {
+        Map<Integer, List<ClassSession>> byLane = new TreeMap<>();
+        for (ClassSession session : sessions) {
+            byLane.computeIfAbsent(laneOf(session.getKlass().getId()), lane -> new ArrayList<>()).add(session);
+        }
+
+        List<CompletableFuture<BatchResult>> running = new ArrayList<>();
+        List<ClassSession> rejected = new ArrayList<>();
+        byLane.forEach((lane, laneSessions) -> {
+            try {
+                running.add(CompletableFuture.supplyAsync(() -> runLane(lane, laneSessions), lanes[lane].worker));
+            } catch (RejectedExecutionException e) {
+                rejectedLanes.increment();
+                rejected.addAll(laneSessions);
+            }
+        });
+
+        CompletableFuture<BatchResult> result = CompletableFuture.allOf(running.toArray(CompletableFuture[]::new))
+                .thenApply(done -> running.stream()
+                        .map(CompletableFuture::join)
+                        .reduce(new BatchResult(0, 0, 0, List.of()), (a, b) -> {
+                            List<ClassSession> failed = new ArrayList<>(a.failed());
+                            failed.addAll(b.failed());
+                            return new BatchResult(
+                                    a.finalized() + b.finalized(),
+                                    a.absentInserted() + b.absentInserted(),
+                                    a.pendingClosed() + b.pendingClosed(),
+                                    failed);
+                        }));
+        return new Submission(result, rejected);
+    }
+
+    public FinalizationExecutorStatsResponse getStats() {
+        List<FinalizationExecutorStatsResponse.LaneStats> laneStats = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            Lane lane = lanes[i];
+            long finalized = lane.finalized.sum();
+            laneStats.add(new FinalizationExecutorStatsResponse.LaneStats(
+                    i,
+                    finalized,
+                    lane.failures.sum(),
+                    finalized == 0 ? 0 : lane.totalMicros.sum() / 1000.0 / finalized,
+                    lane.maxMicros.get() / 1000.0,
+                    lane.lastRunMicros.get() / 1000.0
+            ));
+        }
+        return new FinalizationExecutorStatsResponse(
+                parallelism,
+                Arrays.stream(lanes).mapToInt(lane -> lane.worker.getActiveCount()).sum(),
+                Arrays.stream(lanes).mapToInt(lane -> lane.worker.getQueue().size()).sum(),
+                queueCapacity,
+                rejectedLanes.sum(),
+                laneStats
+        );
+    }
+
+    // Mixed so lanes stay balanced when the instance only owns some class-id-modulo partitions
+    private int laneOf(Long classId) {
+        return Math.floorMod(Long.hashCode(classId * 0x9E3779B97F4A7C15L), parallelism);
+    }
+
+    private BatchResult runLane(int laneIndex, List<ClassSession> sessions) {
+        Lane lane = lanes[laneIndex];
+        long laneStarted = System.nanoTime();
+        int finalized = 0;
+        int absentInserted = 0;
+        int pendingClosed = 0;
+        List<ClassSession> failed = new ArrayList<>();
+
+        for (ClassSession session : sessions) {
+            long started = System.nanoTime();
+            try {
+                Optional<AttendanceFinalizationService.FinalizationResult> result = attendanceFinalizationService.finalizeSession(session);
+                if (result.isPresent()) {
+                    long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started);
+                    lane.finalized.increment();
+                    lane.totalMicros.add(micros);
+                    lane.maxMicros.accumulateAndGet(micros, Math::max);
+
+                    finalized++;
+                    absentInserted += result.get().absentInserted();
+                    pendingClosed += result.get().pendingClosed();
+                    log.debug("Finalized session {}: {} absent rows inserted, {} pending rows closed",
+                            session.getId(), result.get().absentInserted(), result.get().pendingClosed());
+                }
+            } catch (RuntimeException e) {
+                lane.failures.increment();
+                failed.add(session);
+                log.error("Failed to finalize session {}", session.getId(), e);
+            }
+        }
+
+        lane.lastRunMicros.set(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - laneStarted));
+        return new BatchResult(finalized, absentInserted, pendingClosed, failed);
+    }
+}
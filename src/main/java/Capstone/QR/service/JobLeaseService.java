@@ -0,0 +1,124 @@
+package Capstone.QR.service;
+
+import Capstone.QR.repository.JobLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Database-backed leases so that scheduled jobs run on one app instance at a time. A lease is a
+ * row in {@code job_lease} taken over with a conditional UPDATE once it has expired (or inserted
+ * if it does not exist yet), so no external coordinator is needed. Instance clocks must agree to
+ * well within the lease TTLs.
+ */
+@Slf4j
+@Service
+public class JobLeaseService {
+
+    private final JobLeaseRepository jobLeaseRepository;
+    private final String owner;
+    private final Map<String, LocalDateTime> heldUntil = new ConcurrentHashMap<>();
+    private final Map<String, LocalDateTime> nextAttempt = new ConcurrentHashMap<>();
+
+    public JobLeaseService(JobLeaseRepository jobLeaseRepository,
+                           @Value("${jobs.lease.owner:}") String owner) {
+        this.jobLeaseRepository = jobLeaseRepository;
+        this.owner = owner.isBlank() ? defaultOwner() : owner;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public boolean tryAcquire(String name, Duration ttl) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plus(ttl);
+
+        boolean acquired = jobLeaseRepository.takeOver(name, owner, now, until) == 1
+                || jobLeaseRepository.insertIfAbsent(name, owner, now, until) == 1;
+        if (acquired) {
+            heldUntil.put(name, until);
+        } else {
+            heldUntil.remove(name);
+        }
+        return acquired;
+    }
+
+    /**
+     * Runs the job only if this instance gets the lease. The lease is held for at most
+     * {@code lockAtMostFor} if the instance dies mid-run, and for at least {@code lockAtLeastFor}
+     * from the start so that instances whose schedules are out of phase do not repeat the job.
+     */
+    public boolean runExclusively(String name, Duration lockAtMostFor, Duration lockAtLeastFor, Runnable job) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        if (!tryAcquire(name, lockAtMostFor)) {
+            log.debug("Skipping {}: lease held by another instance", name);
+            return false;
+        }
+        try {
+            job.run();
+        } finally {
+            LocalDateTime earliestRelease = startedAt.plus(lockAtLeastFor);
+            LocalDateTime now = LocalDateTime.now();
+            jobLeaseRepository.release(name, owner, earliestRelease.isAfter(now) ? earliestRelease : now);
+            heldUntil.remove(name);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the partitions in {@code [0, partitions)} this instance holds for {@code prefix}.
+     * Held leases are renewed once half their TTL has passed; free ones are tried at most once per
+     * half TTL, and no more than {@code maxOwned} are taken (0 means no limit).
+     */
+    public Set<Integer> ownedPartitions(String prefix, int partitions, int maxOwned, Duration ttl) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime renewBefore = now.plus(ttl.dividedBy(2));
+        int limit = maxOwned <= 0 ? partitions : maxOwned;
+        Set<Integer> owned = new TreeSet<>();
+
+        for (int partition = 0; partition < partitions; partition++) {
+            String name = prefix + "-" + partition;
+            LocalDateTime until = heldUntil.get(name);
+            if (until == null || !until.isAfter(now)) {
+                continue;
+            }
+            if (until.isAfter(renewBefore) || tryAcquire(name, ttl)) {
+                owned.add(partition);
+            }
+        }
+
+        for (int partition = 0; partition < partitions && owned.size() < limit; partition++) {
+            String name = prefix + "-" + partition;
+            if (owned.contains(partition) || now.isBefore(nextAttempt.getOrDefault(name, now))) {
+                continue;
+            }
+            if (tryAcquire(name, ttl)) {
+                owned.add(partition);
+            } else {
+                nextAttempt.put(name, renewBefore);
+            }
+        }
+        return owned;
+    }
+
+    private static String defaultOwner() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,74 @@
+package Capstone.QR.service;
+
+import Capstone.QR.utils.GenerateQR;
+import com.google.zxing.common.BitMatrix;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU of rendered QR images keyed by token, format and size. The ETag is derived from the same key,
+ * so a projector polling the image gets a 304 until the token changes (a new QR or the next
+ * rotation window).
+ */
+@Service
+public class QrImageCache {
+
+    public static final int MIN_SIZE = 64;
+    public static final int MAX_SIZE = 1024;
+
+    public enum Format {
+        PNG,
+        SVG
+    }
+
+    public record RenderedQr(byte[] bytes, String etag) {
+    }
+
+    private final Map<String, RenderedQr> images;
+
+    public QrImageCache(@Value("${qr.image.cache-size:256}") int maxEntries) {
+        this.images = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RenderedQr> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public RenderedQr render(String qrText, Format format, int size) {
+        int clampedSize = Math.min(Math.max(size, MIN_SIZE), MAX_SIZE);
+        String key = format == Format.SVG ? "svg:" + qrText : "png:" + clampedSize + ":" + qrText;
+
+        synchronized (images) {
+            RenderedQr cached = images.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        BitMatrix matrix = GenerateQR.encode(qrText);
+        byte[] bytes = format == Format.SVG ? GenerateQR.toSvg(matrix) : GenerateQR.toPng(matrix, clampedSize);
+        RenderedQr rendered = new RenderedQr(bytes, etagFor(key));
+
+        synchronized (images) {
+            images.put(key, rendered);
+        }
+        return rendered;
+    }
+
+    private static String etagFor(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package Capstone.QR.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Issues and verifies stateless rotating QR tokens of the form {@code sessionId|window|mac}, where
+ * {@code window} is the epoch second divided by the rotation period and {@code mac} is a truncated
+ * HMAC-SHA256 of the first two parts. Any node sharing the secret can verify a token without a
+ * database read. Created eagerly despite lazy initialization, so a missing secret fails startup.
+ */
+@Lazy(false)
+@Service
+public class QrTokenService {
+
+    private static final char SEPARATOR = '|';
+    private static final int MAC_BYTES = 16;
+    // The placeholder shipped in application.properties; anyone can forge tokens signed with it
+    static final String DEFAULT_SECRET = "change-this-qr-token-secret";
+
+    private final byte[] secret;
+    private final long rotationSeconds;
+    private final int graceWindows;
+    private final boolean rotating;
+
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    public QrTokenService(@Value("${qr.token.secret}") String secret,
+                          @Value("${qr.token.rotation-seconds:30}") long rotationSeconds,
+                          @Value("${qr.token.grace-windows:1}") int graceWindows,
+                          @Value("${qr.token.mode:static}") String mode) {
+        this.rotating = "rotating".equalsIgnoreCase(mode);
+        if (rotating && (secret.isBlank() || DEFAULT_SECRET.equals(secret))) {
+            throw new IllegalStateException("qr.token.mode=rotating requires QR_TOKEN_SECRET to be set to a private value");
+        }
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.rotationSeconds = rotationSeconds;
+        this.graceWindows = graceWindows;
+    }
+
+    public boolean isRotating() {
+        return rotating;
+    }
+
+    public boolean isSigned(String token) {
+        return token.indexOf(SEPARATOR) >= 0;
+    }
+
+    public String issue(Long sessionId) {
+        String payload = sessionId + String.valueOf(SEPARATOR) + currentWindow();
+        return payload + SEPARATOR + sign(payload);
+    }
+
+    public Instant currentWindowEndsAt() {
+        return Instant.ofEpochSecond((currentWindow() + 1) * rotationSeconds);
+    }
+
+    public Long verify(String token) {
+        if (!rotating) {
+            throw new RuntimeException("Invalid QR code");
+        }
+        int first = token.indexOf(SEPARATOR);
+        int second = token.indexOf(SEPARATOR, first + 1);
+        if (first <= 0 || second <= first + 1 || second == token.length() - 1) {
+            throw new RuntimeException("Invalid QR code");
+        }
+
+        String payload = token.substring(0, second);
+        byte[] expected = sign(payload).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = token.substring(second + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            throw new RuntimeException("Invalid QR code");
+        }
+
+        long sessionId;
+        long window;
+        try {
+            sessionId = Long.parseLong(token, 0, first, 10);
+            window = Long.parseLong(token, first + 1, second, 10);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid QR code");
+        }
+
+        long current = currentWindow();
+        if (window > current || window < current - graceWindows) {
+            throw new RuntimeException("QR code has expired");
+        }
+        return sessionId;
+    }
+
+    private long currentWindow() {
+        return Instant.now().getEpochSecond() / rotationSeconds;
+    }
+
+    private String sign(String payload) {
+        byte[] mac = macs.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(mac, MAC_BYTES));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
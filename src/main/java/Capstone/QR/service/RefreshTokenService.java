@@ -8,6 +8,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.Date;
 import java.util.UUID;
 
@@ -16,6 +17,7 @@ import java.util.UUID;
 public class RefreshTokenService {
 
     private final RefreshTokenRepository refreshTokenRepository;
+    private final JobLeaseService jobLeaseService;
 
     @Transactional
     public String createRefreshToken(User user) {
@@ -56,8 +58,10 @@ public class RefreshTokenService {
 
     @Scheduled(fixedRate = 1000 * 60 * 60 * 24)
     public void cleanUpExpiredTokens() {
-        refreshTokenRepository.deleteAllExpiredSinceNow();
-        System.out.println("Expired refresh tokens cleaned up at " + new Date());
+        jobLeaseService.runExclusively("refresh-token-cleanup", Duration.ofMinutes(10), Duration.ofHours(23), () -> {
+            refreshTokenRepository.deleteAllExpiredSinceNow();
+            System.out.println("Expired refresh tokens cleaned up at " + new Date());
+        });
     }
 
 }
@@ -0,0 +1,254 @@
+package Capstone.QR.service;
+
+import Capstone.QR.dto.Response.SessionLiveEvent;
+import Capstone.QR.model.AttendanceStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live per-session attendance counts pushed to teachers over server-sent events. Counters are only
+ * kept for sessions somebody is watching: they are loaded with one grouped count when the first
+ * stream opens, moved by status transitions as they commit, and re-read from the database every
+ * {@code attendance.live.resync-seconds} to pick up writes this node did not see. Pushes are
+ * coalesced by a dedicated thread so slow clients never hold up the scan writer.
+ * <p>
+ * Everything here uses plain JDBC so that an open stream does not pin the request's
+ * open-in-view EntityManager to a pooled connection.
+ */
+@Slf4j
+@Service
+public class SessionLiveFeed {
+
+    private static final class LiveSession {
+        final Map<AttendanceStatus, LongAdder> counts = new EnumMap<>(AttendanceStatus.class);
+        final Queue<Long> newlyPresent = new ConcurrentLinkedQueue<>();
+        final Queue<Long> newRequests = new ConcurrentLinkedQueue<>();
+        final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        final AtomicBoolean dirty = new AtomicBoolean();
+        volatile long syncedAtMillis;
+
+        LiveSession() {
+            for (AttendanceStatus status : AttendanceStatus.values()) {
+                counts.put(status, new LongAdder());
+            }
+        }
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final long emitterTimeoutMillis;
+    private final long pushIntervalMillis;
+    private final long resyncMillis;
+    private final long heartbeatMillis;
+    private final Map<Long, LiveSession> sessions = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService pusher;
+    private volatile long lastHeartbeatMillis;
+
+    public SessionLiveFeed(NamedParameterJdbcTemplate jdbcTemplate,
+                           @Value("${attendance.live.emitter-timeout-minutes:180}") long emitterTimeoutMinutes,
+                           @Value("${attendance.live.push-interval-millis:250}") long pushIntervalMillis,
+                           @Value("${attendance.live.resync-seconds:30}") long resyncSeconds,
+                           @Value("${attendance.live.heartbeat-seconds:15}") long heartbeatSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.emitterTimeoutMillis = TimeUnit.MINUTES.toMillis(emitterTimeoutMinutes);
+        this.pushIntervalMillis = pushIntervalMillis;
+        this.resyncMillis = TimeUnit.SECONDS.toMillis(resyncSeconds);
+        this.heartbeatMillis = TimeUnit.SECONDS.toMillis(heartbeatSeconds);
+    }
+
+    @PostConstruct
+    void start() {
+        pusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "attendance-live");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pusher.scheduleWithFixedDelay(this::pushAll, pushIntervalMillis, pushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        pusher.shutdownNow();
+        sessions.values().forEach(live -> live.emitters.forEach(SseEmitter::complete));
+    }
+
+    public Optional<Long> findTeacherIdForSession(Long sessionId) {
+        List<Long> teacherIds = jdbcTemplate.queryForList(
+                "SELECT k.teacher_id FROM class_session s JOIN klass k ON k.id = s.klass_id WHERE s.id = :sessionId",
+                new MapSqlParameterSource("sessionId", sessionId), Long.class);
+        return teacherIds.stream().findFirst();
+    }
+
+    public SseEmitter subscribe(Long sessionId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        // Attach and detach under the same map lock, so an emitter never joins an entry being dropped
+        LiveSession live = sessions.compute(sessionId, (id, current) -> {
+            LiveSession attached = current;
+            if (attached == null) {
+                attached = new LiveSession();
+                resync(id, attached);
+            }
+            attached.emitters.add(emitter);
+            return attached;
+        });
+
+        Runnable unsubscribe = () -> sessions.computeIfPresent(sessionId, (id, current) -> {
+            current.emitters.remove(emitter);
+            return current.emitters.isEmpty() ? null : current;
+        });
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+
+        send(emitter, snapshot(sessionId, live, List.of(), List.of()));
+        return emitter;
+    }
+
+    /**
+     * Records a status change; {@code from} is null when the row was created. Inside a transaction
+     * the change is only applied once it commits, so viewers never see a transition that is rolled back.
+     */
+    public void statusChanged(Long sessionId, Long studentId, AttendanceStatus from, AttendanceStatus to) {
+        afterCommit(() -> applyStatusChange(sessionId, studentId, from, to));
+    }
+
+    private void applyStatusChange(Long sessionId, Long studentId, AttendanceStatus from, AttendanceStatus to) {
+        LiveSession live = sessions.get(sessionId);
+        if (live == null || from == to) {
+            return;
+        }
+        if (from != null) {
+            live.counts.get(from).decrement();
+        }
+        live.counts.get(to).increment();
+        if (to == AttendanceStatus.PRESENT) {
+            live.newlyPresent.add(studentId);
+        }
+        live.dirty.set(true);
+    }
+
+    public void requestReceived(Long sessionId, Long studentId) {
+        afterCommit(() -> applyRequestReceived(sessionId, studentId));
+    }
+
+    private void applyRequestReceived(Long sessionId, Long studentId) {
+        LiveSession live = sessions.get(sessionId);
+        if (live == null) {
+            return;
+        }
+        live.newRequests.add(studentId);
+        live.dirty.set(true);
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    public int getWatchedSessionCount() {
+        return sessions.size();
+    }
+
+    private void pushAll() {
+        long now = System.currentTimeMillis();
+        boolean heartbeat = now - lastHeartbeatMillis >= heartbeatMillis;
+        if (heartbeat) {
+            lastHeartbeatMillis = now;
+        }
+
+        sessions.forEach((sessionId, live) -> {
+            try {
+                if (now - live.syncedAtMillis >= resyncMillis) {
+                    resync(sessionId, live);
+                }
+                if (live.dirty.getAndSet(false)) {
+                    SessionLiveEvent event = snapshot(sessionId, live, drain(live.newlyPresent), drain(live.newRequests));
+                    live.emitters.forEach(emitter -> send(emitter, event));
+                } else if (heartbeat) {
+                    live.emitters.forEach(this::heartbeat);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to push live attendance for session {}", sessionId, e);
+            }
+        });
+    }
+
+    private void resync(Long sessionId, LiveSession live) {
+        Map<AttendanceStatus, Long> counted = new EnumMap<>(AttendanceStatus.class);
+        jdbcTemplate.query(
+                "SELECT status, COUNT(*) AS total FROM attendance WHERE session_id = :sessionId GROUP BY status",
+                new MapSqlParameterSource("sessionId", sessionId),
+                rs -> {
+                    counted.put(AttendanceStatus.valueOf(rs.getString("status")), rs.getLong("total"));
+                });
+
+        for (AttendanceStatus status : AttendanceStatus.values()) {
+            LongAdder counter = live.counts.get(status);
+            long drift = counted.getOrDefault(status, 0L) - counter.sum();
+            if (drift != 0) {
+                counter.add(drift);
+                live.dirty.set(true);
+            }
+        }
+        live.syncedAtMillis = System.currentTimeMillis();
+    }
+
+    private SessionLiveEvent snapshot(Long sessionId, LiveSession live, List<Long> newlyPresent, List<Long> newRequests) {
+        return new SessionLiveEvent(
+                sessionId,
+                live.counts.get(AttendanceStatus.PRESENT).sum(),
+                live.counts.get(AttendanceStatus.PENDING).sum(),
+                live.counts.get(AttendanceStatus.ABSENT).sum(),
+                live.counts.get(AttendanceStatus.EXCUSED).sum(),
+                newlyPresent,
+                newRequests
+        );
+    }
+
+    private static List<Long> drain(Queue<Long> queue) {
+        List<Long> drained = new ArrayList<>();
+        Long next;
+        while ((next = queue.poll()) != null) {
+            drained.add(next);
+        }
+        return drained;
+    }
+
+    private void send(SseEmitter emitter, SessionLiveEvent event) {
+        try {
+            emitter.send(SseEmitter.event().name("attendance").data(event));
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void heartbeat(SseEmitter emitter) {
+        try {
+            emitter.send(SseEmitter.event().comment("keepalive"));
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+}
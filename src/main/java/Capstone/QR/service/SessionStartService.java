@@ -0,0 +1,45 @@
+package Capstone.QR.service;
+
+import Capstone.QR.model.AttendanceStatus;
+import Capstone.QR.model.ClassSession;
+import Capstone.QR.repository.ClassSessionRepository;
+import Capstone.QR.repository.KlassStudentRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Creates the PENDING attendance rows of a session when it goes live, one batch for the whole
+ * roster, so reading a session never has to write. Students approved while a session is live get
+ * their row on approval. Both are idempotent: existing rows are never touched.
+ */
+@Service
+public class SessionStartService {
+
+    private final KlassStudentRepository klassStudentRepository;
+    private final ClassSessionRepository classSessionRepository;
+    private final AttendanceBatchWriter attendanceBatchWriter;
+
+    public SessionStartService(KlassStudentRepository klassStudentRepository,
+                               ClassSessionRepository classSessionRepository,
+                               AttendanceBatchWriter attendanceBatchWriter) {
+        this.klassStudentRepository = klassStudentRepository;
+        this.classSessionRepository = classSessionRepository;
+        this.attendanceBatchWriter = attendanceBatchWriter;
+    }
+
+    @Transactional
+    public int openSession(ClassSession session) {
+        List<Long> studentIds = klassStudentRepository.findApprovedStudentIdsByClassId(session.getKlass().getId());
+        return attendanceBatchWriter.insertMissing(session.getKlass().getId(), session.getId(), studentIds, AttendanceStatus.PENDING);
+    }
+
+    @Transactional
+    public void openForStudent(Long classId, Long studentId) {
+        for (Long sessionId : classSessionRepository.findLiveIdsByClassId(classId, LocalDateTime.now())) {
+            attendanceBatchWriter.insertMissing(classId, sessionId, List.of(studentId), AttendanceStatus.PENDING);
+        }
+    }
+}
@@ -4,8 +4,7 @@ package Capstone.QR.service;
 import Capstone.QR.dto.Response.*;
 import Capstone.QR.model.*;
 import Capstone.QR.repository.*;
-import Capstone.QR.utils.DistanceCalc;
-import jakarta.transaction.Transactional;
+import Capstone.QR.security.AuthenticatedUser;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
@@ -25,10 +24,14 @@ public class StudentService {
     private final StudentRepository studentRepository;
     private final KlassRepository klassRepository;
     private final AttendanceRepository attendanceRepository;
-    private final QRCodeRepository qrCodeRepository;
     private final AttendanceRequestRepository attendanceRequestRepository;
     private final KlassStudentRepository klassStudentRepository;
     private final ClassSessionRepository classSessionRepository;
+    private final ActiveSessionRegistry activeSessionRegistry;
+    private final AttendanceIngestionService attendanceIngestionService;
+    private final EnrollmentCache enrollmentCache;
+    private final SessionLiveFeed sessionLiveFeed;
+    private final AttendanceCounterService attendanceCounterService;
 
     public String requestJoinClass(String email, String joinCode) {
         Student student = studentRepository.findByEmail(email)
@@ -68,75 +71,40 @@ public class StudentService {
     }
 
 
-    @Transactional
-    public String scanQr(String qrCodeData, double studentLat, double studentLng, String networkName, UserDetails userDetails) {
-        Student student = studentRepository.findByEmail(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("Student not found"));
+    public String scanQr(String scanToken, double studentLat, double studentLng, String networkName, UserDetails userDetails) {
+        Long studentId = resolveStudentId(userDetails);
 
-        QRCode qrCode = qrCodeRepository.findByQrCodeData(qrCodeData)
+        ActiveSessionRegistry.ActiveSession activeSession = activeSessionRegistry.resolve(scanToken)
                 .orElseThrow(() -> new RuntimeException("Invalid QR code"));
 
-        ClassSession session = qrCode.getSession();
-        Klass klass = session.getKlass();
-
-        boolean isEnrolled = klassStudentRepository
-                .findByKlassIdAndStudentId(klass.getId(), student.getId())
-                .map(KlassStudent::isApproved)
-                .orElse(false);
-
-        if (!isEnrolled) {
-            throw new RuntimeException("Student not registered or not approved for this class");
+        if (activeSession.isExpired(LocalDateTime.now())) {
+            throw new RuntimeException("QR code has expired");
         }
 
-        Optional<Attendance> optionalAttendance = attendanceRepository
-                .findAllBySession_IdAndStudent_Id(session.getId(), student.getId())
-                .stream()
-                .filter(a -> a.getStatus() != AttendanceStatus.PENDING).findFirst();
-
-        if (optionalAttendance.isPresent()) {
-            throw new RuntimeException("Attendance already marked for this session");
+        if (!enrollmentCache.isApproved(activeSession.classId(), studentId)) {
+            throw new RuntimeException("Student not registered or not approved for this class");
         }
 
-        double distance = DistanceCalc.calculateDistance(qrCode.getLatitude(), qrCode.getLongitude(), studentLat, studentLng);
-        double allowedDistance = klass.getAcceptanceRadiusMeters();
-
-        List<String> allowedSSIDs = klass.getAllowedWifiSSIDs();
-        boolean onAllowedNetwork = allowedSSIDs.contains(networkName);
-
-        if (distance <= allowedDistance) {
-            Optional<Attendance> attendanceOpt = attendanceRepository
-                    .findAllBySession_IdAndStudent_Id(session.getId(), student.getId())
-                    .stream()
-                    .filter(a -> a.getStatus() == AttendanceStatus.PENDING || a.getStatus() == AttendanceStatus.ABSENT || a.getStatus() == AttendanceStatus.EXCUSED)
-                    .findFirst();
+        Long sessionId = activeSession.sessionId();
 
-            if (attendanceOpt.isPresent()) {
-                Attendance attendance = attendanceOpt.get();
-                attendance.setStatus(AttendanceStatus.PRESENT);
-                attendance.setRecordedAt(LocalDateTime.now());
-                attendanceRepository.save(attendance);
-            } else {
-                Attendance newAttendance = new Attendance();
-                newAttendance.setSession(session);
-                newAttendance.setStudent(student);
-                newAttendance.setRecordedAt(LocalDateTime.now());
-                newAttendance.setStatus(AttendanceStatus.PRESENT);
-                attendanceRepository.save(newAttendance);
+        if (activeSession.geofence().contains(studentLat, studentLng)) {
+            if (attendanceIngestionService.markPresent(sessionId, studentId) == AttendanceIngestionService.Outcome.ALREADY_MARKED) {
+                throw new RuntimeException("Attendance already marked for this session");
             }
+            return "Attendance marked successfully.";
+        }
 
-            attendanceRequestRepository.findByStudentIdAndSessionId(student.getId(), session.getId())
-                    .ifPresent(request -> {
-                        if (request.getStatus() == RequestStatus.PENDING) {
-                            attendanceRequestRepository.delete(request);
-                        }
-                    });
+        boolean alreadyMarked = attendanceRepository.findAllBySession_IdAndStudent_Id(sessionId, studentId)
+                .stream()
+                .anyMatch(a -> a.getStatus() != AttendanceStatus.PENDING);
 
-            return "Attendance marked successfully.";
+        if (alreadyMarked) {
+            throw new RuntimeException("Attendance already marked for this session");
         }
 
-        if (onAllowedNetwork) {
+        if (activeSession.allowedSSIDs().contains(networkName)) {
             AttendanceRequest existingRequest = attendanceRequestRepository
-                    .findByStudentIdAndSessionId(student.getId(), session.getId())
+                    .findByStudentIdAndSessionId(studentId, sessionId)
                     .orElse(null);
 
             if (existingRequest != null && existingRequest.getStatus() == RequestStatus.PENDING) {
@@ -148,25 +116,13 @@ public class StudentService {
 
             } else {
                 AttendanceRequest newRequest = new AttendanceRequest();
-                newRequest.setStudent(student);
-                newRequest.setSession(session);
+                newRequest.setStudent(studentRepository.getReferenceById(studentId));
+                newRequest.setSession(classSessionRepository.getReferenceById(sessionId));
                 newRequest.setRequestedAt(LocalDateTime.now());
                 newRequest.setStatus(RequestStatus.PENDING);
                 attendanceRequestRepository.save(newRequest);
             }
-
-            Optional<Attendance> attendanceOpt = attendanceRepository
-                    .findAllBySession_IdAndStudent_Id(session.getId(), student.getId())
-                    .stream()
-                    .filter(a -> a.getStatus() == AttendanceStatus.ABSENT)
-                    .findFirst();
-
-            if (attendanceOpt.isPresent()) {
-                Attendance attendance = attendanceOpt.get();
-                attendance.setStatus(AttendanceStatus.PENDING);
-                attendance.setRecordedAt(LocalDateTime.now());
-                attendanceRepository.save(attendance);
-            }
+            sessionLiveFeed.requestReceived(sessionId, studentId);
 
             return "You're not near the class but connected to an approved Wi-Fi network. An Attendance Request has been sent to the instructor.";
 
@@ -174,10 +130,18 @@ public class StudentService {
 
         throw new RuntimeException(
                 "You're too far and connected to an unapproved network: " + networkName +
-                        ". Approved networks for this class are: " + String.join(", ", allowedSSIDs)
+                        ". Approved networks for this class are: " + String.join(", ", activeSession.allowedSSIDs())
         );
     }
 
+    private Long resolveStudentId(UserDetails userDetails) {
+        if (userDetails instanceof AuthenticatedUser authenticatedUser) {
+            return authenticatedUser.getId();
+        }
+        return studentRepository.findIdByEmail(userDetails.getUsername())
+                .orElseThrow(() -> new RuntimeException("Student not found"));
+    }
+
 
     public StudentAttendanceSummaryResponse getMyAttendanceSummary(Long classId, UserDetails userDetails) {
         Student student = studentRepository.findByEmail(userDetails.getUsername())
@@ -196,20 +160,18 @@ public class StudentService {
                 ));
 
         List<StudentAttendanceSummaryResponse.SessionStatus> sessionStatuses = new ArrayList<>();
-        int present = 0, excused = 0, absent = 0;
+        AttendanceCounter counter = attendanceCounterService.getCounter(classId, student.getId());
+        int present = counter.getPresent(), excused = counter.getExcused(), absent = counter.getAbsent();
 
         for (ClassSession session : pastSessions) {
             AttendanceStatus status = attendanceMap.get(session.getId());
 
             String displayStatus;
             if (status == AttendanceStatus.PRESENT) {
-                present++;
                 displayStatus = "PRESENT";
             } else if (status == AttendanceStatus.EXCUSED) {
-                excused++;
                 displayStatus = "EXCUSED";
             } else if (status == AttendanceStatus.ABSENT) {
-                absent++;
                 displayStatus = "ABSENT";
             } else {
                 displayStatus = "NOT_RECORDED";
@@ -261,18 +223,12 @@ public class StudentService {
 
 
     public ClassDetailResponse getClassDetail(Long classId, UserDetails userDetails) {
-        Student student = studentRepository.findByEmail(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("Student not found"));
+        Long studentId = resolveStudentId(userDetails);
 
         Klass klass = klassRepository.findById(classId)
                 .orElseThrow(() -> new RuntimeException("Class not found"));
 
-        boolean isApproved = klassStudentRepository
-                .findByKlassIdAndStudentId(classId, student.getId())
-                .map(KlassStudent::isApproved)
-                .orElse(false);
-
-        if (!isApproved) {
+        if (!enrollmentCache.isApproved(classId, studentId)) {
             throw new RuntimeException("You're not enrolled in this class.");
         }
 
@@ -336,6 +292,7 @@ public class StudentService {
         }
 
         klassStudentRepository.delete(request);
+        enrollmentCache.studentRemoved(classId, student.getId());
     }
 
 
@@ -5,6 +5,7 @@ import Capstone.QR.dto.Request.UpdateSessionRequest;
 import Capstone.QR.dto.Response.*;
 import Capstone.QR.model.*;
 import Capstone.QR.repository.*;
+import Capstone.QR.security.AuthenticatedUser;
 import Capstone.QR.utils.CodeGeneratorUtil;
 import Capstone.QR.utils.GenerateSessions;
 import jakarta.transaction.Transactional;
@@ -13,6 +14,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -20,8 +22,6 @@ import java.time.LocalTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
-import static Capstone.QR.utils.GenerateQR.generateQrCodeImage;
-
 @Service
 @RequiredArgsConstructor
 public class TeacherService {
@@ -34,6 +34,15 @@ public class TeacherService {
     private final KlassStudentRepository klassStudentRepository;
     private final ClassSessionRepository classSessionRepository;
     private final StudentRepository studentRepository;
+    private final ActiveSessionRegistry activeSessionRegistry;
+    private final QrTokenService qrTokenService;
+    private final EnrollmentCache enrollmentCache;
+    private final QrImageCache qrImageCache;
+    private final SessionLiveFeed sessionLiveFeed;
+    private final AttendanceScheduler attendanceScheduler;
+    private final AttendanceCounterService attendanceCounterService;
+    private final SessionStartService sessionStartService;
+    private final AttendanceBatchWriter attendanceBatchWriter;
 
 
     public ClassResponse createClass(CreateClassRequest request, UserDetails userDetails) {
@@ -84,6 +93,7 @@ public class TeacherService {
 
         klassRepository.save(klass);
         classSessionRepository.saveAll(sessions);
+        sessions.forEach(attendanceScheduler::schedule);
 
         return mapToClassResponse(klass);
     }
@@ -98,6 +108,36 @@ public class TeacherService {
                 .collect(Collectors.toList());
     }
 
+    public List<TeacherSessionResponse> getLiveSessions(UserDetails userDetails) {
+        Teacher teacher = teacherRepository.findByEmail(userDetails.getUsername())
+                .orElseThrow(() -> new RuntimeException("Teacher not found"));
+
+        return classSessionRepository.findLiveByTeacherId(teacher.getId(), LocalDateTime.now()).stream()
+                .map(this::mapToTeacherSessionResponse)
+                .toList();
+    }
+
+    public List<TeacherSessionResponse> getUpcomingSessions(int withinMinutes, UserDetails userDetails) {
+        Teacher teacher = teacherRepository.findByEmail(userDetails.getUsername())
+                .orElseThrow(() -> new RuntimeException("Teacher not found"));
+
+        LocalDateTime now = LocalDateTime.now();
+        return classSessionRepository.findStartingBetweenByTeacherId(teacher.getId(), now, now.plusMinutes(withinMinutes)).stream()
+                .map(this::mapToTeacherSessionResponse)
+                .toList();
+    }
+
+    private TeacherSessionResponse mapToTeacherSessionResponse(ClassSession session) {
+        return new TeacherSessionResponse(
+                session.getId(),
+                session.getKlass().getId(),
+                session.getKlass().getName(),
+                session.getTopic(),
+                session.getStartsAt(),
+                session.getEndsAt()
+        );
+    }
+
     public ClassDetailResponse getClassDetails(Long classId, UserDetails userDetails) {
         Klass klass = validateTeacherOwnsClass(classId, userDetails);
 
@@ -160,18 +200,13 @@ public class TeacherService {
         Student student = studentRepository.findById(studentId)
                 .orElseThrow(() -> new RuntimeException("Student not found"));
 
-        List<ClassSession> validSessions = classSessionRepository.findByKlass_Id(classId).stream()
-                .filter(s -> !s.isCanceled() &&
-                        !s.getSessionDate().atTime(s.getSessionTime()).isAfter(LocalDateTime.now()))
-                .toList();
-
-        int total = validSessions.size();
+        int total = (int) classSessionRepository.countHeldSessions(classId, LocalDateTime.now());
 
-        List<Attendance> attendances = attendanceRepository.findBySession_Klass_IdAndStudent_Id(classId, studentId);
+        AttendanceCounter counter = attendanceCounterService.getCounter(classId, studentId);
 
-        int present = (int) attendances.stream().filter(a -> a.getStatus() == AttendanceStatus.PRESENT).count();
-        int excused = (int) attendances.stream().filter(a -> a.getStatus() == AttendanceStatus.EXCUSED).count();
-        int absent = (int) attendances.stream().filter(a -> a.getStatus() == AttendanceStatus.ABSENT).count();
+        int present = counter.getPresent();
+        int excused = counter.getExcused();
+        int absent = counter.getAbsent();
 
         double percentage = total == 0 ? 0.0 : (present * 100.0) / total;
 
@@ -197,23 +232,60 @@ public class TeacherService {
 
         validateTeacherOwnsClass(session.getKlass().getId(), userDetails);
 
-        String qrText = UUID.randomUUID().toString();
-        String qrBase64 = generateQrCodeImage(qrText);
-
         QRCode qrCode = qrCodeRepository.findBySessionId(sessionId)
                 .orElse(new QRCode());
 
         qrCode.setSession(session);
         qrCode.setSessionDate(session.getSessionDate().atTime(session.getSessionTime()));
         qrCode.setExpiresAt(LocalDateTime.now().plusMinutes(10));
-        qrCode.setQrCodeData(qrBase64);
+        qrCode.setScanToken(qrTokenService.isRotating() ? null : CodeGeneratorUtil.generateScanToken());
         qrCode.setLatitude(latitude);
         qrCode.setLongitude(longitude);
 
-        return qrCodeRepository.save(qrCode);
+        QRCode saved = qrCodeRepository.save(qrCode);
+        activeSessionRegistry.register(saved);
+        return renderQrCode(saved);
+    }
+
+    public QRCode getCurrentQrCode(Long sessionId, UserDetails userDetails) {
+        return renderQrCode(findLiveQrCode(sessionId, userDetails));
+    }
+
+    public QrImageCache.RenderedQr getCurrentQrImage(Long sessionId, QrImageCache.Format format, int size, UserDetails userDetails) {
+        return qrImageCache.render(qrTextFor(findLiveQrCode(sessionId, userDetails)), format, size);
+    }
+
+    private QRCode findLiveQrCode(Long sessionId, UserDetails userDetails) {
+        QRCode qrCode = qrCodeRepository.findBySessionId(sessionId)
+                .orElseThrow(() -> new RuntimeException("No QR code generated for this session"));
+
+        validateTeacherOwnsClass(qrCode.getSession().getKlass().getId(), userDetails);
+
+        if (qrCode.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new RuntimeException("QR code has expired");
+        }
+        return qrCode;
+    }
+
+    private QRCode renderQrCode(QRCode qrCode) {
+        String qrText = qrTextFor(qrCode);
+        byte[] png = qrImageCache.render(qrText, QrImageCache.Format.PNG, 300).bytes();
+        qrCode.setQrText(qrText);
+        qrCode.setQrCodeData(Base64.getEncoder().encodeToString(png));
+        return qrCode;
     }
 
+    private String qrTextFor(QRCode qrCode) {
+        return qrTokenService.isRotating()
+                ? qrTokenService.issue(qrCode.getSession().getId())
+                : qrCode.getScanToken();
+    }
 
+
+    /**
+     * Read-only: rows are created when the session goes live ({@link SessionStartService}) and at
+     * finalization; until then a student without a row is shown with the status it will get.
+     */
     public SessionDetailResponse getSessionDetails(Long sessionId, UserDetails userDetails) {
         ClassSession session = classSessionRepository.findById(sessionId)
                 .orElseThrow(() -> new RuntimeException("Session not found"));
@@ -231,98 +303,32 @@ public class TeacherService {
             );
         }
 
-        List<Student> enrolledStudents = klassStudentRepository.findAllByKlassIdAndApprovedTrue(session.getKlass().getId())
-                .stream()
-                .map(KlassStudent::getStudent)
-                .toList();
-
-        List<Attendance> recordedAttendances = attendanceRepository.findBySession_Id(sessionId);
-
-        Map<Long, Attendance> attendanceMap = recordedAttendances.stream()
+        Long classId = session.getKlass().getId();
+        List<Student> enrolledStudents = klassStudentRepository.findApprovedStudentsByClassId(classId);
+        Map<Long, Attendance> attendanceMap = attendanceRepository.findBySessionIdWithStudent(sessionId).stream()
                 .collect(Collectors.toMap(a -> a.getStudent().getId(), a -> a));
 
-        LocalDateTime sessionStart = session.getSessionDate().atTime(session.getSessionTime());
-        LocalDateTime sessionEnd = sessionStart.plusMinutes(session.getKlass().getDurationMinutes());
-        LocalDateTime now = LocalDateTime.now();
-
-        List<AttendanceResponse> attendanceResponses = enrolledStudents.stream()
-                .map(student -> {
-                    Attendance attendance = attendanceMap.get(student.getId());
-                    String imageUrl = student.getProfileImageUrl();
-                    if (attendance != null) {
-                        return new AttendanceResponse(
-                                attendance.getId(),
-                                session.getKlass().getId(),
-                                imageUrl,
-                                student.getId(),
-                                sessionId,
-                                student.getName(),
-                                attendance.getRecordedAt(),
-                                attendance.getStatus(),
-
-                                attendanceRepository.countBySession_Klass_IdAndStudent_IdAndStatus(
-                                        session.getKlass().getId(),
-                                        student.getId(),
-                                        AttendanceStatus.ABSENT
-                                ) >= session.getKlass().getMaxAbsencesAllowed()
-                        );
-
-                    } else if (now.isBefore(sessionEnd)) {
-                        Attendance newPending = new Attendance();
-                        newPending.setStudent(student);
-                        newPending.setSession(session);
-                        newPending.setRecordedAt(LocalDateTime.now());
-                        newPending.setStatus(AttendanceStatus.PENDING);
-
-                        Attendance savedPending = attendanceRepository.save(newPending);
-
-                        return new AttendanceResponse(
-                                savedPending.getId(),
-                                session.getKlass().getId(),
-                                imageUrl,
-                                student.getId(),
-                                sessionId,
-                                student.getName(),
-                                savedPending.getRecordedAt(),
-                                savedPending.getStatus(),
-
-                                attendanceRepository.countBySession_Klass_IdAndStudent_IdAndStatus(
-                                        session.getKlass().getId(),
-                                        student.getId(),
-                                        AttendanceStatus.ABSENT
-                                ) >= session.getKlass().getMaxAbsencesAllowed()
-                        );
-
-                    } else {
-                        Attendance newAbsent = new Attendance();
-                        newAbsent.setStudent(student);
-                        newAbsent.setSession(session);
-                        newAbsent.setRecordedAt(LocalDateTime.now());
-                        newAbsent.setStatus(AttendanceStatus.ABSENT);
-
-                        Attendance savedAbsent = attendanceRepository.save(newAbsent);
-
-                        return new AttendanceResponse(
-                                savedAbsent.getId(),
-                                session.getKlass().getId(),
-                                imageUrl,
-                                student.getId(),
-                                sessionId,
-                                student.getName(),
-                                attendance.getRecordedAt(),
-                                attendance.getStatus(),
-
-                                attendanceRepository.countBySession_Klass_IdAndStudent_IdAndStatus(
-                                        session.getKlass().getId(),
-                                        student.getId(),
-                                        AttendanceStatus.ABSENT
-                                ) >= session.getKlass().getMaxAbsencesAllowed()
-                        );
-
-                    }
-
-                })
-                .toList();
+        Map<Long, AttendanceCounter> counters = attendanceCounterService.getCountersForClass(classId);
+        int maxAbsences = session.getKlass().getMaxAbsencesAllowed();
+        AttendanceStatus unrecorded = unrecordedStatus(session);
+
+        List<AttendanceResponse> attendanceResponses = new ArrayList<>(enrolledStudents.size());
+        for (Student student : enrolledStudents) {
+            Attendance attendance = attendanceMap.get(student.getId());
+            AttendanceStatus status = attendance != null ? attendance.getStatus() : unrecorded;
+            int absences = absences(counters, student.getId()) + (attendance == null && status == AttendanceStatus.ABSENT ? 1 : 0);
+            attendanceResponses.add(new AttendanceResponse(
+                    attendance != null ? attendance.getId() : null,
+                    classId,
+                    student.getProfileImageUrl(),
+                    student.getId(),
+                    sessionId,
+                    student.getName(),
+                    attendance != null ? attendance.getRecordedAt() : null,
+                    status,
+                    absences >= maxAbsences
+            ));
+        }
 
         return new SessionDetailResponse(
                 session.getId(),
@@ -335,6 +341,19 @@ public class TeacherService {
     }
 
 
+    public SseEmitter subscribeToSessionLive(Long sessionId, UserDetails userDetails) {
+        Long teacherId = sessionLiveFeed.findTeacherIdForSession(sessionId)
+                .orElseThrow(() -> new RuntimeException("Session not found"));
+
+        Long callerId = userDetails instanceof AuthenticatedUser authenticatedUser
+                ? authenticatedUser.getId()
+                : teacherRepository.findByEmail(userDetails.getUsername()).map(Teacher::getId).orElse(null);
+        if (!teacherId.equals(callerId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
+        }
+        return sessionLiveFeed.subscribe(sessionId);
+    }
+
     public List<Attendance> getSessionAttendance(Long sessionId, Long studentId, UserDetails userDetails) {
         ClassSession session = classSessionRepository.findById(sessionId)
                 .orElseThrow(() -> new RuntimeException("Session not found"));
@@ -344,8 +363,9 @@ public class TeacherService {
         return attendanceRepository.findAllBySession_IdAndStudent_Id(sessionId, studentId);
     }
 
+    @Transactional
     public void editAttendance(Long sessionId, Long attendanceId, AttendanceStatus newStatus, UserDetails userDetails) {
-        Attendance attendance = attendanceRepository.findById(attendanceId)
+        Attendance attendance = attendanceRepository.findByIdForUpdate(attendanceId)
                 .orElseThrow(() -> new RuntimeException("Attendance not found"));
 
         if (!attendance.getSession().getId().equals(sessionId)) {
@@ -354,11 +374,47 @@ public class TeacherService {
 
         validateTeacherOwnsClass(attendance.getSession().getKlass().getId(), userDetails);
 
+        AttendanceStatus previousStatus = attendance.getStatus();
+        attendance.setStatus(newStatus);
+        attendanceRepository.save(attendance);
+        attendanceCounterService.transition(sessionId, attendance.getStudent().getId(), previousStatus, newStatus);
+        sessionLiveFeed.statusChanged(sessionId, attendance.getStudent().getId(), previousStatus, newStatus);
+    }
+
+    /**
+     * Edits a student's attendance whether or not the session has a row for them yet; students
+     * listed without a row get it created with the status the session details showed, so the
+     * counters see the same transition as for any other edit.
+     */
+    @Transactional
+    public void editStudentAttendance(Long sessionId, Long studentId, AttendanceStatus newStatus, UserDetails userDetails) {
+        ClassSession session = classSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new RuntimeException("Session not found"));
+
+        Long classId = session.getKlass().getId();
+        validateTeacherOwnsClass(classId, userDetails);
+
+        boolean enrolled = klassStudentRepository.findByKlassIdAndStudentId(classId, studentId)
+                .map(KlassStudent::isApproved)
+                .orElse(false);
+        if (!enrolled) {
+            throw new RuntimeException("Student is not enrolled in this class");
+        }
+
+        // INSERT IGNORE waits on a concurrent insert of the same row, so the lock below always finds it
+        attendanceBatchWriter.insertMissing(classId, sessionId, List.of(studentId), unrecordedStatus(session));
+        Attendance attendance = attendanceRepository.findBySessionIdAndStudentIdForUpdate(sessionId, studentId)
+                .orElseThrow(() -> new RuntimeException("Attendance not found"));
+
+        AttendanceStatus previousStatus = attendance.getStatus();
         attendance.setStatus(newStatus);
         attendanceRepository.save(attendance);
+        attendanceCounterService.transition(sessionId, studentId, previousStatus, newStatus);
+        sessionLiveFeed.statusChanged(sessionId, studentId, previousStatus, newStatus);
     }
 
 
+    @Transactional
     public void approveAttendanceRequest(Long requestId, Long sessionId, UserDetails userDetails) {
         AttendanceRequest request = attendanceRequestRepository.findById(requestId)
                 .orElseThrow(() -> new RuntimeException("Request not found"));
@@ -375,24 +431,16 @@ public class TeacherService {
         request.setStatus(RequestStatus.APPROVED);
         attendanceRequestRepository.save(request);
 
-        Optional<Attendance> existingAttendance = attendanceRepository
-                .findBySession_IdAndStudent_Id(session.getId(), request.getStudent().getId());
-
-        if (existingAttendance.isPresent()) {
-            Attendance attendance = existingAttendance.get();
-            attendance.setRecordedAt(LocalDateTime.now());
-            attendance.setStatus(AttendanceStatus.PRESENT);
-            attendanceRepository.save(attendance);
-        } else {
-            Attendance newAttendance = new Attendance();
-            newAttendance.setSession(session);
-            newAttendance.setStudent(request.getStudent());
-            newAttendance.setRecordedAt(LocalDateTime.now());
-            newAttendance.setStatus(AttendanceStatus.PRESENT);
-            attendanceRepository.save(newAttendance);
-        }
+        Long studentId = request.getStudent().getId();
+        AttendanceStatus previousStatus = attendanceRepository.findBySessionIdAndStudentIdForUpdate(session.getId(), studentId)
+                .map(Attendance::getStatus)
+                .orElse(null);
+        attendanceRepository.upsertStatus(session.getId(), studentId, AttendanceStatus.PRESENT.name(), LocalDateTime.now());
+        attendanceCounterService.transition(session.getId(), studentId, previousStatus, AttendanceStatus.PRESENT);
+        sessionLiveFeed.statusChanged(session.getId(), studentId, previousStatus, AttendanceStatus.PRESENT);
     }
 
+    @Transactional
     public void rejectAttendanceRequest(Long requestId, Long sessionId, UserDetails userDetails) {
         AttendanceRequest request = attendanceRequestRepository.findById(requestId)
                 .orElseThrow(() -> new RuntimeException("Request not found"));
@@ -407,14 +455,17 @@ public class TeacherService {
         }
 
         Optional<Attendance> existingAttendance = attendanceRepository
-                .findBySession_IdAndStudent_Id(session.getId(), request.getStudent().getId());
+                .findBySessionIdAndStudentIdForUpdate(session.getId(), request.getStudent().getId());
 
         if (existingAttendance.isPresent()) {
             Attendance attendance = existingAttendance.get();
+            AttendanceStatus previousStatus = attendance.getStatus();
 
             attendance.setStatus(AttendanceStatus.ABSENT);
             attendance.setRecordedAt(LocalDateTime.now());
             attendanceRepository.save(attendance);
+            attendanceCounterService.transition(session.getId(), request.getStudent().getId(), previousStatus, AttendanceStatus.ABSENT);
+            sessionLiveFeed.statusChanged(session.getId(), request.getStudent().getId(), previousStatus, AttendanceStatus.ABSENT);
         }
 
         request.setStatus(RequestStatus.REJECTED);
@@ -454,6 +505,9 @@ public class TeacherService {
 
         joinRequest.setApproved(true);
         klassStudentRepository.save(joinRequest);
+        klassRepository.bumpContentVersion(classId);
+        enrollmentCache.studentApproved(classId, studentId);
+        sessionStartService.openForStudent(classId, studentId);
     }
 
     public void rejectStudentJoin(Long classId, Long studentId, UserDetails userDetails) {
@@ -463,6 +517,8 @@ public class TeacherService {
                 .orElseThrow(() -> new RuntimeException("Join request not found"));
 
         klassStudentRepository.delete(joinRequest);
+        klassRepository.bumpContentVersion(classId);
+        enrollmentCache.studentRemoved(classId, studentId);
     }
 
     public List<StudentResponse> getPendingJoinRequests(Long classId, UserDetails userDetails) {
@@ -481,6 +537,16 @@ public class TeacherService {
     }
 
 
+    private static int absences(Map<Long, AttendanceCounter> counters, Long studentId) {
+        AttendanceCounter counter = counters.get(studentId);
+        return counter == null ? 0 : counter.getAbsent();
+    }
+
+    // Status of a student the session has no row for yet
+    private static AttendanceStatus unrecordedStatus(ClassSession session) {
+        return LocalDateTime.now().isBefore(session.getEndsAt()) ? AttendanceStatus.PENDING : AttendanceStatus.ABSENT;
+    }
+
     private Klass validateTeacherOwnsClass(Long classId, UserDetails userDetails) {
         Klass klass = klassRepository.findById(classId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Class not found"));
@@ -503,10 +569,13 @@ public class TeacherService {
             session.setCanceled(true);
 
             List<Attendance> attendances = attendanceRepository.findBySession_Id(session.getId());
+            List<AttendanceCounterService.Transition> transitions = new ArrayList<>();
             for (Attendance a : attendances) {
+                transitions.add(new AttendanceCounterService.Transition(session.getId(), a.getStudent().getId(), a.getStatus(), AttendanceStatus.EXCUSED));
                 a.setStatus(AttendanceStatus.EXCUSED);
             }
             attendanceRepository.saveAll(attendances);
+            attendanceCounterService.transitions(transitions);
         }
 
         if (req.getTopic() != null) {
@@ -524,10 +593,7 @@ public class TeacherService {
             for (ClassSession s : teacherSessions) {
                 if (s.getId().equals(session.getId())) continue;
 
-                LocalDateTime existingStart = s.getSessionDate().atTime(s.getSessionTime());
-                LocalDateTime existingEnd = existingStart.plusMinutes(s.getKlass().getDurationMinutes());
-
-                if (!(newEnd.isBefore(existingStart) || newStart.isAfter(existingEnd))) {
+                if (!(newEnd.isBefore(s.getStartsAt()) || newStart.isAfter(s.getEndsAt()))) {
                     throw new RuntimeException("Conflict with another session you teach on the same day.");
                 }
             }
@@ -538,10 +604,7 @@ public class TeacherService {
                 for (ClassSession s : studentSessions) {
                     if (s.getId().equals(session.getId())) continue;
 
-                    LocalDateTime existingStart = s.getSessionDate().atTime(s.getSessionTime());
-                    LocalDateTime existingEnd = existingStart.plusMinutes(s.getKlass().getDurationMinutes());
-
-                    if (!(newEnd.isBefore(existingStart) || newStart.isAfter(existingEnd))) {
+                    if (!(newEnd.isBefore(s.getStartsAt()) || newStart.isAfter(s.getEndsAt()))) {
                         String conflictMessage = String.format(
                                 "Conflict for student %s with class '%s' at %s",
                                 student.getName(),
@@ -553,11 +616,15 @@ public class TeacherService {
                 }
             }
 
-            session.setSessionDate(req.getSessionDate());
-            session.setSessionTime(req.getSessionTime());
+            GenerateSessions.schedule(session, req.getSessionDate(), req.getSessionTime(), klass.getDurationMinutes());
+            session.setFinalizationState(FinalizationState.OPEN);
+            session.setFinalizationClaimedAt(null);
         }
 
         classSessionRepository.save(session);
+        klassRepository.bumpContentVersion(klass.getId());
+        activeSessionRegistry.evictSession(session.getId());
+        attendanceScheduler.schedule(session);
     }
 
 
@@ -565,21 +632,19 @@ public class TeacherService {
         Klass klass = klassRepository.findById(classId)
                 .orElseThrow(() -> new RuntimeException("Class not found"));
 
-        List<ClassSession> sessions = classSessionRepository.findByKlass_Id(classId);
-        int totalSessions = (int) sessions.stream()
-                .filter(session -> !session.getSessionDate().isAfter(LocalDate.now()))
-                .count();
+        int totalSessions = (int) classSessionRepository.countHeldSessions(classId, LocalDateTime.now());
 
         List<Student> students = klassStudentRepository.findApprovedStudentsByClassId(classId);
+        Map<Long, AttendanceCounter> counters = attendanceCounterService.getCountersForClass(classId);
 
         List<StudentClassAttendanceSummaryResponse> summaries = new ArrayList<>();
 
         for (Student student : students) {
-            List<Attendance> attendanceRecords = attendanceRepository.findBySession_Klass_IdAndStudent_Id(classId, student.getId());
+            AttendanceCounter counter = counters.getOrDefault(student.getId(), new AttendanceCounter());
 
-            int present = (int) attendanceRecords.stream().filter((a -> a.getStatus() == AttendanceStatus.PRESENT)).count();
-            int excused = (int) attendanceRecords.stream().filter((a -> a.getStatus() == AttendanceStatus.EXCUSED)).count();
-            int absent = (int) attendanceRecords.stream().filter((a -> a.getStatus() == AttendanceStatus.ABSENT)).count();
+            int present = counter.getPresent();
+            int excused = counter.getExcused();
+            int absent = counter.getAbsent();
 
 
             int remaining = klass.getMaxAbsencesAllowed() - absent;
@@ -1,10 +1,24 @@
 package Capstone.QR.utils;
 
+import java.security.SecureRandom;
+import java.util.Base64;
 import java.util.UUID;
 
 public class CodeGeneratorUtil {
 
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     public static String generateJoinCode() {
         return UUID.randomUUID().toString().substring(0, 5);
     }
+
+    /**
+     * 128 random bits as unpadded base64url, always 22 characters. This is the text
+     * encoded in the session QR and the key students send back on scan.
+     */
+    public static String generateScanToken() {
+        byte[] bytes = new byte[16];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
 }
@@ -2,33 +2,147 @@ package Capstone.QR.utils;
 
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 public class GenerateQR {
 
+    private static final int DEFAULT_SIZE = 300;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final ThreadLocal<byte[]> SCANLINES = ThreadLocal.withInitial(() -> new byte[8192]);
+    private static final ThreadLocal<byte[]> DEFLATED = ThreadLocal.withInitial(() -> new byte[8192]);
+
 
     public static String generateQrCodeImage(String text) {
+        return Base64.getEncoder().encodeToString(toPng(encode(text), DEFAULT_SIZE));
+    }
+
+    /**
+     * Encodes {@code text} at one pixel per module, including the quiet zone.
+     */
+    public static BitMatrix encode(String text) {
         try {
-            QRCodeWriter qrCodeWriter = new QRCodeWriter();
-            BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, 300, 300);
+            return new QRCodeWriter().encode(text, BarcodeFormat.QR_CODE, 0, 0);
+        } catch (WriterException e) {
+            throw new RuntimeException("Failed to generate QR code", e);
+        }
+    }
 
-            BufferedImage image = MatrixToImageWriter.toBufferedImage(bitMatrix);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(image, "PNG", baos);
+    /**
+     * Writes the matrix as a 1-bit grayscale PNG scaled by a whole number of pixels per module to
+     * at most {@code targetSize} pixels, straight from the bit matrix without a BufferedImage.
+     */
+    public static byte[] toPng(BitMatrix matrix, int targetSize) {
+        int modules = matrix.getWidth();
+        int scale = Math.max(1, targetSize / modules);
+        int size = modules * scale;
+        int rowBytes = 1 + (size + 7) / 8;
 
-            return Base64.getEncoder().encodeToString(baos.toByteArray());
+        byte[] scanlines = buffer(SCANLINES, rowBytes * size);
+        for (int moduleY = 0; moduleY < modules; moduleY++) {
+            int rowStart = moduleY * scale * rowBytes;
+            scanlines[rowStart] = 0;
+            for (int i = 1; i < rowBytes; i++) {
+                scanlines[rowStart + i] = 0;
+            }
+            for (int x = 0; x < size; x++) {
+                if (!matrix.get(x / scale, moduleY)) {
+                    scanlines[rowStart + 1 + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+                }
+            }
+            for (int repeat = 1; repeat < scale; repeat++) {
+                System.arraycopy(scanlines, rowStart, scanlines, rowStart + repeat * rowBytes, rowBytes);
+            }
+        }
 
-        } catch (WriterException | IOException e) {
-            throw new RuntimeException("Failed to generate QR code", e);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] deflated;
+        int deflatedLength;
+        try {
+            deflater.setInput(scanlines, 0, rowBytes * size);
+            deflater.finish();
+            deflated = buffer(DEFLATED, rowBytes * size + (rowBytes * size >> 10) + 64);
+            deflatedLength = deflater.deflate(deflated);
+        } finally {
+            deflater.end();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(deflatedLength + 64);
+        out.writeBytes(PNG_SIGNATURE);
+        byte[] header = new byte[13];
+        writeInt(header, 0, size);
+        writeInt(header, 4, size);
+        header[8] = 1;
+        header[9] = 0;
+        writeChunk(out, "IHDR", header, header.length);
+        writeChunk(out, "IDAT", deflated, deflatedLength);
+        writeChunk(out, "IEND", new byte[0], 0);
+        return out.toByteArray();
+    }
+
+    /**
+     * Renders the matrix as SVG with one path that merges each horizontal run of dark modules.
+     */
+    public static byte[] toSvg(BitMatrix matrix) {
+        int modules = matrix.getWidth();
+        StringBuilder svg = new StringBuilder(modules * modules);
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 ").append(modules).append(' ').append(modules)
+                .append("\" shape-rendering=\"crispEdges\"><rect width=\"100%\" height=\"100%\" fill=\"#fff\"/><path fill=\"#000\" d=\"");
+        for (int y = 0; y < modules; y++) {
+            int x = 0;
+            while (x < modules) {
+                if (!matrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < modules && matrix.get(x, y)) {
+                    x++;
+                }
+                svg.append('M').append(start).append(' ').append(y).append('h').append(x - start).append("v1h-").append(x - start).append('z');
+            }
+        }
+        svg.append("\"/></svg>");
+        return svg.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] buffer(ThreadLocal<byte[]> holder, int length) {
+        byte[] buffer = holder.get();
+        if (buffer.length < length) {
+            buffer = new byte[Integer.highestOneBit(length) << 1];
+            holder.set(buffer);
         }
+        return buffer;
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data, int length) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] lengthBytes = new byte[4];
+        writeInt(lengthBytes, 0, length);
+        out.writeBytes(lengthBytes);
+        out.writeBytes(typeBytes);
+        out.write(data, 0, length);
+
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        byte[] crcBytes = new byte[4];
+        writeInt(crcBytes, 0, (int) crc.getValue());
+        out.writeBytes(crcBytes);
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
     }
 
 }
@@ -4,6 +4,7 @@ import Capstone.QR.model.ClassSession;
 import Capstone.QR.model.Klass;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -16,8 +17,7 @@ public class GenerateSessions {
             if (klass.getScheduledDays().contains(current.getDayOfWeek())) {
                 ClassSession session = new ClassSession();
                 session.setKlass(klass);
-                session.setSessionDate(current);
-                session.setSessionTime(klass.getClassTime());
+                schedule(session, current, klass.getClassTime(), klass.getDurationMinutes());
                 sessions.add(session);
             }
             current = current.plusDays(1);
@@ -25,4 +25,11 @@ public class GenerateSessions {
         return sessions;
     }
 
+    public static void schedule(ClassSession session, LocalDate date, LocalTime time, int durationMinutes) {
+        session.setSessionDate(date);
+        session.setSessionTime(time);
+        session.setStartsAt(date.atTime(time));
+        session.setEndsAt(session.getStartsAt().plusMinutes(durationMinutes));
+    }
+
 }
@@ -0,0 +1,81 @@
+package Capstone.QR.utils;
+
+/**
+ * Circular geofence around a QR location, precomputed once per QR. Points outside the lat/lng
+ * bounding box are rejected with four comparisons; points inside it are measured with an
+ * equirectangular projection scaled by the cosine of the centre latitude, which stays within a
+ * millimetre of {@link DistanceCalc#calculateDistance} inside radii up to 100 m at latitudes up to
+ * 70°, and within 5 mm out to twice the radius.
+ */
+public final class Geofence {
+
+    private static final double EARTH_RADIUS_METERS = 6371000;
+    private static final double METERS_PER_DEGREE = EARTH_RADIUS_METERS * Math.PI / 180;
+
+    private final double centerLat;
+    private final double centerLng;
+    private final double radiusMeters;
+    private final double radiusSquared;
+    private final double metersPerDegreeLng;
+    private final double minLat;
+    private final double maxLat;
+    private final double lngSpan;
+
+    private Geofence(double centerLat, double centerLng, double radiusMeters) {
+        this.centerLat = centerLat;
+        this.centerLng = centerLng;
+        this.radiusMeters = radiusMeters;
+        this.radiusSquared = radiusMeters * radiusMeters;
+        this.metersPerDegreeLng = METERS_PER_DEGREE * Math.cos(Math.toRadians(centerLat));
+
+        double latSpan = radiusMeters / METERS_PER_DEGREE;
+        this.minLat = centerLat - latSpan;
+        this.maxLat = centerLat + latSpan;
+        this.lngSpan = metersPerDegreeLng > radiusMeters / 180 ? radiusMeters / metersPerDegreeLng : 180;
+    }
+
+    public static Geofence around(double latitude, double longitude, double radiusMeters) {
+        return new Geofence(latitude, longitude, radiusMeters);
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        if (latitude < minLat || latitude > maxLat) {
+            return false;
+        }
+        double dLng = longitudeDelta(longitude);
+        if (dLng > lngSpan || dLng < -lngSpan) {
+            return false;
+        }
+        double x = dLng * metersPerDegreeLng;
+        double y = (latitude - centerLat) * METERS_PER_DEGREE;
+        return x * x + y * y <= radiusSquared;
+    }
+
+    public double distanceMeters(double latitude, double longitude) {
+        double x = longitudeDelta(longitude) * metersPerDegreeLng;
+        double y = (latitude - centerLat) * METERS_PER_DEGREE;
+        return Math.sqrt(x * x + y * y);
+    }
+
+    public double getLatitude() {
+        return centerLat;
+    }
+
+    public double getLongitude() {
+        return centerLng;
+    }
+
+    public double getRadiusMeters() {
+        return radiusMeters;
+    }
+
+    private double longitudeDelta(double longitude) {
+        double d = longitude - centerLng;
+        if (d > 180) {
+            d -= 360;
+        } else if (d < -180) {
+            d += 360;
+        }
+        return d;
+    }
+}
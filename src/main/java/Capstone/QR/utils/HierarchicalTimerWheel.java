@@ -0,0 +1,143 @@
+package Capstone.QR.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel keyed by an id. Level 0 has one slot per tick and each higher level
+ * covers a whole rotation of the level below; entries cascade down as their slot comes up, so
+ * scheduling is O(1) and advancing costs O(entries due) plus one slot visit per tick. Deadlines
+ * beyond the top level wait in an overflow list that is re-examined once per top-level rotation.
+ * <p>
+ * Rescheduling or cancelling a key only updates its deadline; the stale entry stays in its slot
+ * and is dropped when reached. All public methods are synchronized.
+ */
+public class HierarchicalTimerWheel<K> {
+
+    private record Entry<K>(K key, long deadlineTick) {
+    }
+
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    private final int levels;
+    private final List<Entry<K>>[][] wheels;
+    private final List<Entry<K>> overdue = new ArrayList<>();
+    private final List<Entry<K>> overflow = new ArrayList<>();
+    private final Map<K, Long> deadlines = new HashMap<>();
+    private long currentTick;
+
+    /**
+     * @param slotsPerLevel a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimerWheel(long tickMillis, int slotsPerLevel, int levels, long startMillis) {
+        if (Integer.bitCount(slotsPerLevel) != 1) {
+            throw new IllegalArgumentException("slotsPerLevel must be a power of two");
+        }
+        this.tickMillis = tickMillis;
+        this.bits = Integer.numberOfTrailingZeros(slotsPerLevel);
+        this.mask = slotsPerLevel - 1;
+        this.levels = levels;
+        this.wheels = new List[levels][slotsPerLevel];
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    public synchronized void schedule(K key, long deadlineMillis) {
+        long deadlineTick = (deadlineMillis + tickMillis - 1) / tickMillis;
+        deadlines.put(key, deadlineTick);
+        place(new Entry<>(key, deadlineTick));
+    }
+
+    public synchronized boolean cancel(K key) {
+        return deadlines.remove(key) != null;
+    }
+
+    public synchronized int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * Advances the wheel to {@code nowMillis} and returns the keys whose deadline has passed, each
+     * exactly once.
+     */
+    public synchronized List<K> advanceTo(long nowMillis) {
+        List<K> expired = new ArrayList<>();
+        collect(overdue, expired);
+        overdue.clear();
+
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            for (int level = levels - 1; level >= 1; level--) {
+                if ((currentTick & ((1L << (bits * level)) - 1)) == 0) {
+                    cascade(level, (int) ((currentTick >>> (bits * level)) & mask));
+                }
+            }
+            if ((currentTick & ((1L << (bits * levels)) - 1)) == 0 && !overflow.isEmpty()) {
+                List<Entry<K>> waiting = new ArrayList<>(overflow);
+                overflow.clear();
+                waiting.forEach(this::placeIfLive);
+            }
+
+            int slot = (int) (currentTick & mask);
+            List<Entry<K>> due = wheels[0][slot];
+            if (due != null) {
+                wheels[0][slot] = null;
+                collect(due, expired);
+            }
+            if (!overdue.isEmpty()) {
+                collect(overdue, expired);
+                overdue.clear();
+            }
+        }
+        return expired;
+    }
+
+    private void collect(List<Entry<K>> entries, List<K> expired) {
+        for (Entry<K> entry : entries) {
+            Long deadline = deadlines.get(entry.key());
+            if (deadline != null && deadline == entry.deadlineTick()) {
+                deadlines.remove(entry.key());
+                expired.add(entry.key());
+            }
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        List<Entry<K>> entries = wheels[level][slot];
+        if (entries == null) {
+            return;
+        }
+        wheels[level][slot] = null;
+        entries.forEach(this::placeIfLive);
+    }
+
+    private void placeIfLive(Entry<K> entry) {
+        Long deadline = deadlines.get(entry.key());
+        if (deadline != null && deadline == entry.deadlineTick()) {
+            place(entry);
+        }
+    }
+
+    private void place(Entry<K> entry) {
+        long delta = entry.deadlineTick() - currentTick;
+        if (delta <= 0) {
+            overdue.add(entry);
+            return;
+        }
+        for (int level = 0; level < levels; level++) {
+            if (delta < 1L << (bits * (level + 1))) {
+                int slot = (int) ((entry.deadlineTick() >>> (bits * level)) & mask);
+                if (wheels[level][slot] == null) {
+                    wheels[level][slot] = new ArrayList<>();
+                }
+                wheels[level][slot].add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+}
@@ -0,0 +1,121 @@
+package Capstone.QR.utils;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable open-addressing hash set of positive longs (entity ids) backed by a single
+ * {@code long[]}. Zero marks an empty slot, so it cannot be stored. Updates return a copy,
+ * which keeps reads lock-free for sets that change far less often than they are queried.
+ */
+public final class LongHashSet {
+
+    private static final long ARRAY_HEADER_BYTES = 16;
+    private static final long OBJECT_BYTES = 24;
+
+    private final long[] slots;
+    private final int size;
+
+    private LongHashSet(long[] slots, int size) {
+        this.slots = slots;
+        this.size = size;
+    }
+
+    public static LongHashSet of(Collection<Long> values) {
+        long[] slots = new long[capacityFor(values.size())];
+        int size = 0;
+        for (Long value : values) {
+            if (insert(slots, value)) {
+                size++;
+            }
+        }
+        return new LongHashSet(slots, size);
+    }
+
+    public boolean contains(long value) {
+        if (value <= 0) {
+            return false;
+        }
+        int mask = slots.length - 1;
+        for (int i = mix(value) & mask; ; i = (i + 1) & mask) {
+            long slot = slots[i];
+            if (slot == value) {
+                return true;
+            }
+            if (slot == 0) {
+                return false;
+            }
+        }
+    }
+
+    public LongHashSet with(long value) {
+        if (contains(value)) {
+            return this;
+        }
+        long[] copy = slots.length >= capacityFor(size + 1) ? slots.clone() : rehash(capacityFor(size + 1));
+        insert(copy, value);
+        return new LongHashSet(copy, size + 1);
+    }
+
+    public LongHashSet without(long value) {
+        if (!contains(value)) {
+            return this;
+        }
+        long[] copy = new long[capacityFor(size - 1)];
+        for (long slot : slots) {
+            if (slot != 0 && slot != value) {
+                insert(copy, slot);
+            }
+        }
+        return new LongHashSet(copy, size - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long memoryBytes() {
+        return OBJECT_BYTES + ARRAY_HEADER_BYTES + (long) slots.length * Long.BYTES;
+    }
+
+    private long[] rehash(int capacity) {
+        long[] copy = new long[capacity];
+        for (long slot : slots) {
+            if (slot != 0) {
+                insert(copy, slot);
+            }
+        }
+        return copy;
+    }
+
+    private static boolean insert(long[] slots, long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Only positive ids can be stored: " + value);
+        }
+        int mask = slots.length - 1;
+        for (int i = mix(value) & mask; ; i = (i + 1) & mask) {
+            if (slots[i] == value) {
+                return false;
+            }
+            if (slots[i] == 0) {
+                slots[i] = value;
+                return true;
+            }
+        }
+    }
+
+    private static int capacityFor(int size) {
+        int capacity = Integer.highestOneBit(Math.max(4, size * 2 - 1)) << 1;
+        return Math.max(capacity, 8);
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "LongHashSet" + Arrays.toString(Arrays.stream(slots).filter(s -> s != 0).sorted().toArray());
+    }
+}
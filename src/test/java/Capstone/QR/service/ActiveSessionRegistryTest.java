@@ -0,0 +1,48 @@
+package Capstone.QR.service;
+
+import Capstone.QR.repository.QRCodeRepository;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ActiveSessionRegistryTest {
+
+    @Test
+    void correctlySignedTokenIsRejectedInStaticMode() throws Exception {
+        String token = sign(42L, QrTokenService.DEFAULT_SECRET);
+
+        QRCodeRepository qrCodeRepository = mock(QRCodeRepository.class);
+        when(qrCodeRepository.findSnapshotByScanToken(token)).thenReturn(Optional.empty());
+        QrTokenService staticTokens = new QrTokenService(QrTokenService.DEFAULT_SECRET, 30, 1, "static");
+        ActiveSessionRegistry registry = new ActiveSessionRegistry(qrCodeRepository, staticTokens);
+
+        assertTrue(registry.resolve(token).isEmpty());
+        assertThrows(RuntimeException.class, () -> staticTokens.verify(token));
+        verify(qrCodeRepository, never()).findSnapshotBySessionId(anyLong());
+    }
+
+    @Test
+    void rotatingModeRefusesDefaultSecret() {
+        assertThrows(IllegalStateException.class,
+                () -> new QrTokenService(QrTokenService.DEFAULT_SECRET, 30, 1, "rotating"));
+    }
+
+    // sessionId|window|mac, signed the way QrTokenService signs it
+    private static String sign(Long sessionId, String secret) throws Exception {
+        String payload = sessionId + "|" + Instant.now().getEpochSecond() / 30;
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] digest = mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        return payload + "|" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+    }
+}
@@ -0,0 +1,63 @@
+package Capstone.QR.service;
+
+import Capstone.QR.repository.JobLeaseRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:job-lease;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class JobLeaseServiceTest {
+
+    private static final Duration TTL = Duration.ofMinutes(1);
+
+    @Autowired
+    private JobLeaseRepository jobLeaseRepository;
+
+    @Test
+    void secondOwnerCannotTakeUnexpiredLease() {
+        JobLeaseService first = new JobLeaseService(jobLeaseRepository, "node-a");
+        JobLeaseService second = new JobLeaseService(jobLeaseRepository, "node-b");
+
+        assertTrue(first.tryAcquire("rebuild", TTL));
+        assertFalse(second.tryAcquire("rebuild", TTL));
+        assertTrue(first.tryAcquire("rebuild", TTL), "holder renews its own lease");
+        assertFalse(second.tryAcquire("rebuild", TTL));
+        assertEquals("node-a", jobLeaseRepository.findById("rebuild").orElseThrow().getOwner());
+    }
+
+    @Test
+    void expiredLeaseIsTakenOver() {
+        JobLeaseService first = new JobLeaseService(jobLeaseRepository, "node-a");
+        JobLeaseService second = new JobLeaseService(jobLeaseRepository, "node-b");
+
+        assertTrue(first.tryAcquire("watermark", Duration.ZERO));
+        assertTrue(second.tryAcquire("watermark", TTL));
+        assertFalse(first.tryAcquire("watermark", TTL));
+    }
+
+    @Test
+    void exclusiveJobsAndPartitionsAreNotShared() {
+        JobLeaseService first = new JobLeaseService(jobLeaseRepository, "node-a");
+        JobLeaseService second = new JobLeaseService(jobLeaseRepository, "node-b");
+        AtomicInteger runs = new AtomicInteger();
+
+        assertTrue(first.tryAcquire("cleanup", TTL));
+        assertFalse(second.runExclusively("cleanup", TTL, Duration.ZERO, runs::incrementAndGet));
+        assertEquals(0, runs.get());
+
+        assertEquals(Set.of(0, 1, 2, 3), first.ownedPartitions("finalization-partition", 4, 0, TTL));
+        assertEquals(Set.of(), second.ownedPartitions("finalization-partition", 4, 0, TTL));
+    }
+}
@@ -0,0 +1,167 @@
+package Capstone.QR.service;
+
+import Capstone.QR.dto.Response.AttendanceResponse;
+import Capstone.QR.dto.Response.SessionDetailResponse;
+import Capstone.QR.model.*;
+import Capstone.QR.repository.*;
+import Capstone.QR.support.StatementCounter;
+import Capstone.QR.utils.GenerateSessions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts JDBC round trips at the DataSource, so JdbcTemplate batches are seen as well as Hibernate
+ * statements. Scheduling is off so the session-start timer cannot open the session behind the test.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:session-details;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "scheduling.enabled=false"
+})
+@Import(SessionDetailsStatementCountTest.Config.class)
+class SessionDetailsStatementCountTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        static StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+    }
+
+    private record RoundTrips(long viewBeforeOpen, long open, long viewAfterOpen) {
+    }
+
+    @Autowired
+    private TeacherService teacherService;
+    @Autowired
+    private SessionStartService sessionStartService;
+    @Autowired
+    private TeacherRepository teacherRepository;
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private KlassRepository klassRepository;
+    @Autowired
+    private KlassStudentRepository klassStudentRepository;
+    @Autowired
+    private ClassSessionRepository classSessionRepository;
+
+    @Test
+    void statementCountDoesNotGrowWithRoster() {
+        RoundTrips small = roundTripsForSessionDetails(3);
+        RoundTrips large = roundTripsForSessionDetails(40);
+
+        assertEquals(small.viewBeforeOpen(), large.viewBeforeOpen(), "view before the session opens");
+        assertEquals(small.open(), large.open(), "opening the session");
+        assertEquals(small.viewAfterOpen(), large.viewAfterOpen(), "view after the session opens");
+    }
+
+    private RoundTrips roundTripsForSessionDetails(int classSize) {
+        Teacher teacher = new Teacher();
+        teacher.setName("Teacher " + classSize);
+        teacher.setEmail("teacher" + classSize + "@test.local");
+        teacher.setPassword("n/a");
+        teacher.setRole(Role.TEACHER);
+        teacher.setApproved(true);
+        teacherRepository.save(teacher);
+
+        Klass klass = new Klass();
+        klass.setName("Class " + classSize);
+        klass.setDescription("Session details test class");
+        klass.setTeacher(teacher);
+        klass.setMaxAbsencesAllowed(3);
+        klass.setDurationMinutes(60);
+        klass.setStartDate(LocalDate.now());
+        klass.setEndDate(LocalDate.now());
+        klass.setScheduledDays(List.of(DayOfWeek.values()));
+        klass.setClassTime(LocalDateTime.now().toLocalTime());
+        klass.setJoinCode("DET" + classSize);
+        klass.setAllowedWifiSSIDs(List.of("campus-wifi"));
+        klassRepository.save(klass);
+
+        LocalDateTime start = LocalDateTime.now().minusMinutes(10);
+        ClassSession session = new ClassSession();
+        session.setKlass(klass);
+        GenerateSessions.schedule(session, start.toLocalDate(), start.toLocalTime(), 60);
+        classSessionRepository.save(session);
+
+        List<Student> students = new ArrayList<>(classSize);
+        List<KlassStudent> enrollments = new ArrayList<>(classSize);
+        for (int i = 0; i < classSize; i++) {
+            Student student = new Student();
+            student.setName("Student " + classSize + "-" + i);
+            student.setEmail("student" + classSize + "-" + i + "@test.local");
+            student.setPassword("n/a");
+            student.setRole(Role.STUDENT);
+            students.add(studentRepository.save(student));
+
+            KlassStudent enrollment = new KlassStudent();
+            enrollment.setKlass(klass);
+            enrollment.setStudent(student);
+            enrollment.setApproved(true);
+            enrollments.add(enrollment);
+        }
+        klassStudentRepository.saveAll(enrollments);
+
+        UserDetails caller = User.withUsername(teacher.getEmail()).password("n/a").roles("TEACHER").build();
+
+        // Nothing has created the rows yet, so every student is listed without one
+        StatementCounter.reset();
+        SessionDetailResponse beforeOpen = teacherService.getSessionDetails(session.getId(), caller);
+        long viewBeforeOpen = StatementCounter.statements();
+        assertRoster(beforeOpen, session, students, false);
+
+        // One batch for the rows and one for their counter deltas
+        StatementCounter.reset();
+        assertEquals(classSize, sessionStartService.openSession(session));
+        long open = StatementCounter.statements();
+        assertEquals(2L * classSize, StatementCounter.batchedRows());
+        assertEquals(0, sessionStartService.openSession(session), "opening again inserts nothing");
+
+        StatementCounter.reset();
+        SessionDetailResponse afterOpen = teacherService.getSessionDetails(session.getId(), caller);
+        long viewAfterOpen = StatementCounter.statements();
+        assertRoster(afterOpen, session, students, true);
+
+        return new RoundTrips(viewBeforeOpen, open, viewAfterOpen);
+    }
+
+    private static void assertRoster(SessionDetailResponse response, ClassSession session, List<Student> students, boolean recorded) {
+        assertEquals(session.getId(), response.getId());
+        assertFalse(response.isCanceled());
+
+        Map<Long, String> expected = students.stream().collect(Collectors.toMap(Student::getId, Student::getName));
+        Map<Long, String> actual = response.getAttendance().stream()
+                .collect(Collectors.toMap(AttendanceResponse::getStudentId, AttendanceResponse::getStudentname));
+        assertEquals(expected, actual);
+
+        for (AttendanceResponse attendance : response.getAttendance()) {
+            assertEquals(session.getKlass().getId(), attendance.getClassId());
+            assertEquals(session.getId().longValue(), attendance.getSessionId());
+            assertEquals(AttendanceStatus.PENDING, attendance.getStatus());
+            assertEquals(recorded, attendance.getId() != null, "row id of student " + attendance.getStudentId());
+            assertEquals(recorded, attendance.getRecordedAt() != null, "recordedAt of student " + attendance.getStudentId());
+            assertFalse(attendance.isMaxAbsence());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package Capstone.QR.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps the application's DataSource so every statement round trip is counted. A JDBC batch
+ * counts as one round trip; {@link #batchedRows()} tracks the rows it carried.
+ */
+public class StatementCounter implements BeanPostProcessor {
+
+    private static final Set<String> STATEMENT_FACTORIES = Set.of("createStatement", "prepareStatement", "prepareCall");
+    private static final Set<String> EXECUTIONS = Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate",
+            "executeBatch", "executeLargeBatch");
+
+    private static final LongAdder STATEMENTS = new LongAdder();
+    private static final LongAdder BATCHED_ROWS = new LongAdder();
+
+    public static void reset() {
+        STATEMENTS.reset();
+        BATCHED_ROWS.reset();
+    }
+
+    public static long statements() {
+        return STATEMENTS.sum();
+    }
+
+    public static long batchedRows() {
+        return BATCHED_ROWS.sum();
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource) {
+            return proxy(DataSource.class, dataSource, (target, method, args) -> {
+                Object result = method.invoke(target, args);
+                return result instanceof Connection connection ? wrapConnection(connection) : result;
+            });
+        }
+        return bean;
+    }
+
+    private static Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, connection, (target, method, args) -> {
+            Object result = method.invoke(target, args);
+            if (STATEMENT_FACTORIES.contains(method.getName()) && result instanceof Statement statement) {
+                return wrapStatement(statement);
+            }
+            return result;
+        });
+    }
+
+    private static Statement wrapStatement(Statement statement) {
+        Class<?>[] interfaces = statementInterfaces(statement);
+        return (Statement) Proxy.newProxyInstance(StatementCounter.class.getClassLoader(), interfaces, (proxy, method, args) -> {
+            if (EXECUTIONS.contains(method.getName())) {
+                STATEMENTS.increment();
+            }
+            if ("addBatch".equals(method.getName())) {
+                BATCHED_ROWS.increment();
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    private static Class<?>[] statementInterfaces(Statement statement) {
+        if (statement instanceof java.sql.CallableStatement) {
+            return new Class<?>[]{java.sql.CallableStatement.class};
+        }
+        if (statement instanceof java.sql.PreparedStatement) {
+            return new Class<?>[]{java.sql.PreparedStatement.class};
+        }
+        return new Class<?>[]{Statement.class};
+    }
+
+    @FunctionalInterface
+    private interface Interceptor<T> {
+        Object invoke(T target, java.lang.reflect.Method method, Object[] args) throws Throwable;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Interceptor<T> interceptor) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            try {
+                return interceptor.invoke(target, method, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (T) Proxy.newProxyInstance(StatementCounter.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,42 @@
+package Capstone.QR.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeofenceTest {
+
+    @Test
+    void agreesWithHaversineAtClassroomRadii() {
+        Random random = new Random(1);
+        for (double centerLat : new double[]{0, 33.8938, -45, 65, 70}) {
+            for (double radius : new double[]{5, 25, 100}) {
+                Geofence geofence = Geofence.around(centerLat, 35.5018, radius);
+                for (int i = 0; i < 10_000; i++) {
+                    double lat = centerLat + (random.nextDouble() * 2 - 1) * radius * 2 / 111_000;
+                    double lng = 35.5018 + (random.nextDouble() * 2 - 1) * radius * 2 / 111_000;
+                    double exact = DistanceCalc.calculateDistance(centerLat, 35.5018, lat, lng);
+
+                    assertEquals(exact, geofence.distanceMeters(lat, lng), 0.005);
+                    if (exact <= radius) {
+                        assertEquals(exact, geofence.distanceMeters(lat, lng), 0.001);
+                    }
+                    if (Math.abs(exact - radius) > 0.005) {
+                        assertEquals(exact <= radius, geofence.contains(lat, lng));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void rejectsFarPointsAndHandlesAntimeridian() {
+        Geofence geofence = Geofence.around(10, 179.99995, 20);
+
+        assertTrue(geofence.contains(10, -179.99995));
+        assertFalse(geofence.contains(10.01, 179.99995));
+        assertFalse(geofence.contains(10, 0));
+    }
+}
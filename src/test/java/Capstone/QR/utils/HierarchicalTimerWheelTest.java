@@ -0,0 +1,60 @@
+package Capstone.QR.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalTimerWheelTest {
+
+    private static final long START = 1_700_000_000_123L;
+
+    @Test
+    void firesEachLiveKeyOnceWithinATickOfItsDeadline() {
+        Random random = new Random(1);
+        HierarchicalTimerWheel<Integer> wheel = new HierarchicalTimerWheel<>(1000, 64, 3, START);
+        Map<Integer, Long> expected = new HashMap<>();
+
+        for (int key = 0; key < 20_000; key++) {
+            long deadline = START - 5_000 + (long) (random.nextDouble() * random.nextDouble() * 400_000_000L);
+            wheel.schedule(key, deadline);
+            expected.put(key, deadline);
+        }
+        for (int key = 0; key < 20_000; key += 7) {
+            long deadline = START + (long) (random.nextDouble() * 300_000_000L);
+            wheel.schedule(key, deadline);
+            expected.put(key, deadline);
+        }
+        for (int key = 3; key < 20_000; key += 11) {
+            wheel.cancel(key);
+            expected.remove(key);
+        }
+
+        long now = START;
+        while (now < START + 500_000_000L) {
+            now += 1000 + random.nextInt(30_000);
+            for (int key : wheel.advanceTo(now)) {
+                Long deadline = expected.remove(key);
+                assertNotNull(deadline, "fired twice or after cancel: " + key);
+                assertTrue(deadline <= now, "fired early: " + key);
+            }
+        }
+        assertTrue(expected.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void overdueKeysFireOnNextAdvance() {
+        HierarchicalTimerWheel<String> wheel = new HierarchicalTimerWheel<>(1000, 64, 3, START);
+        wheel.schedule("ended", START - 60_000);
+        wheel.schedule("later", START + 10_000);
+
+        assertEquals(List.of("ended"), wheel.advanceTo(START));
+        assertEquals(List.of(), wheel.advanceTo(START + 5_000));
+        assertEquals(List.of("later"), wheel.advanceTo(START + 11_000));
+    }
+}
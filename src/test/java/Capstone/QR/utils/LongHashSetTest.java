@@ -0,0 +1,77 @@
+package Capstone.QR.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHashSetTest {
+
+    @Test
+    void containsOnlyStoredIds() {
+        LongHashSet set = LongHashSet.of(List.of(3L, 7L, 7L, 1_000_000_007L));
+
+        assertEquals(3, set.size());
+        assertTrue(set.contains(3));
+        assertTrue(set.contains(7));
+        assertTrue(set.contains(1_000_000_007L));
+        assertFalse(set.contains(4));
+        assertFalse(set.contains(0));
+        assertFalse(set.contains(-3));
+    }
+
+    @Test
+    void withAndWithoutReturnCopies() {
+        LongHashSet original = LongHashSet.of(List.of(1L, 2L));
+
+        LongHashSet added = original.with(5);
+        LongHashSet removed = added.without(1);
+
+        assertFalse(original.contains(5));
+        assertTrue(added.contains(5));
+        assertEquals(3, added.size());
+        assertFalse(removed.contains(1));
+        assertTrue(removed.contains(2));
+        assertTrue(removed.contains(5));
+        assertEquals(2, removed.size());
+        assertSame(added, added.with(5));
+        assertSame(removed, removed.without(42));
+    }
+
+    @Test
+    void rejectsNonPositiveIds() {
+        assertThrows(IllegalArgumentException.class, () -> LongHashSet.of(List.of(0L)));
+        assertThrows(IllegalArgumentException.class, () -> LongHashSet.of(List.of()).with(-1));
+    }
+
+    @Test
+    void growsAndShrinksAcrossRehashes() {
+        Random random = new Random(7);
+        Set<Long> expected = new HashSet<>();
+        LongHashSet set = LongHashSet.of(List.of());
+        for (int i = 0; i < 5_000; i++) {
+            long id = 1 + random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                set = set.without(id);
+                expected.remove(id);
+            } else {
+                set = set.with(id);
+                expected.add(id);
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        for (long id = 1; id <= 2_000; id++) {
+            assertEquals(expected.contains(id), set.contains(id), "id " + id);
+        }
+        long before = set.memoryBytes();
+        for (long id = 1; id <= 2_000; id++) {
+            set = set.without(id);
+        }
+        assertEquals(0, set.size());
+        assertTrue(set.memoryBytes() < before);
+    }
+}